@@ -6,6 +6,9 @@ import ui.MainFrame;
  */
 public class Main {
     public static void main(String[] args) {
+        // Startup timings are measured from here
+        long startNanos = System.nanoTime();
+        
         // Set system look and feel
         try {
             UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
@@ -15,7 +18,7 @@ public class Main {
         
         // Create and show the main frame
         SwingUtilities.invokeLater(() -> {
-            MainFrame frame = new MainFrame();
+            MainFrame frame = new MainFrame(startNanos);
             frame.setVisible(true);
         });
     }
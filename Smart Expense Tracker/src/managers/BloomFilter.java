@@ -0,0 +1,68 @@
+package managers;
+
+/**
+ * Fixed-size Bloom filter over 64-bit keys.
+ *
+ * Answers "definitely absent" or "maybe present" with about 1% false
+ * positives at ten bits per key. All of a key's bits sit in one 64-byte
+ * block, so a probe costs a single cache miss. Keys cannot be removed;
+ * owners rebuild the filter when it fills up.
+ */
+class BloomFilter {
+    private static final int BITS_PER_KEY = 10;
+    private static final int HASHES = 7;
+
+    // One block is 8 longs, 512 bits, one cache line
+    private static final int BLOCK_LONGS = 8;
+
+    private final long[] bits;
+    private final int blockMask;
+    private final int capacity;
+
+    BloomFilter(int capacity) {
+        this.capacity = Math.max(capacity, 1024);
+        long wanted = ((long) this.capacity * BITS_PER_KEY + 511) / 512;
+        int blocks = Integer.highestOneBit((int) Math.min(wanted, 1 << 26));
+        if (blocks < wanted) {
+            blocks <<= 1;
+        }
+        this.bits = new long[blocks * BLOCK_LONGS];
+        this.blockMask = blocks - 1;
+    }
+
+    /**
+     * Number of keys the filter was sized for
+     */
+    int getCapacity() {
+        return capacity;
+    }
+
+    void add(long key) {
+        long hash = mix(key);
+        int block = (int) (mix(hash) & blockMask) * BLOCK_LONGS;
+        // Seven 9-bit slices of the hash pick the bits inside the block
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (int) (hash >>> i * 9) & 511;
+            bits[block + (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    boolean mightContain(long key) {
+        long hash = mix(key);
+        int block = (int) (mix(hash) & blockMask) * BLOCK_LONGS;
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (int) (hash >>> i * 9) & 511;
+            if ((bits[block + (bit >>> 6)] & 1L << bit) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Stafford variant 13 of the MurmurHash3 finalizer
+    private static long mix(long value) {
+        value = (value ^ value >>> 30) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ value >>> 27) * 0x94D049BB133111EBL;
+        return value ^ value >>> 31;
+    }
+}
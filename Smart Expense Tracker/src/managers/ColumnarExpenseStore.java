@@ -0,0 +1,443 @@
+package managers;
+
+import java.time.LocalDate;
+import java.util.*;
+import models.Category;
+import models.Expense;
+
+/**
+ * Column-oriented expense store for very large histories.
+ *
+ * Amounts are kept as long cents, dates as int epoch days and categories as
+ * int ordinals in parallel primitive arrays. Ids that are canonical UUIDs are
+ * packed into two longs; descriptions and notes live in separate string
+ * columns so the numeric columns stay dense. Totals and range scans are plain
+ * array loops that do not allocate. Rows are unordered: deletes move the last
+ * row into the freed slot.
+ *
+ * ExpenseManager keeps one in step with its rows when columnar mode is on.
+ * Not thread-safe on its own; the manager's lock guards it.
+ */
+public class ColumnarExpenseStore {
+    private static final int INITIAL_CAPACITY = 1024;
+    // Category column value for expenses without a category
+    private static final int NO_CATEGORY = -1;
+
+    // Category ordinals
+    private final List<Category> categories = new ArrayList<>();
+    private final Map<String, Integer> categoryOrdinals = new HashMap<>();
+
+    // Numeric columns
+    private long[] amountCents;
+    private int[] epochDays;
+    private int[] categoryColumn;
+
+    // Id columns: UUID bits, or an index into otherIds for non-UUID ids
+    private long[] idHigh;
+    private long[] idLow;
+    private int[] idHashes;
+    private String[] otherIds;
+
+    // String columns
+    private String[] descriptions;
+    private String[] notes;
+
+    // Open-addressing id index: slot holds row + 1, 0 means empty
+    private int[] idSlots;
+    private int size;
+
+    public ColumnarExpenseStore(List<Category> categories) {
+        for (Category category : categories) {
+            ordinalOf(category);
+        }
+        allocate(INITIAL_CAPACITY);
+        idSlots = new int[INITIAL_CAPACITY * 2];
+    }
+
+    public ColumnarExpenseStore(List<Category> categories, Collection<Expense> expenses) {
+        this(categories);
+        ensureCapacity(expenses.size());
+        for (Expense expense : expenses) {
+            add(expense);
+        }
+    }
+
+    // Row operations
+    public void add(Expense expense) {
+        int existing = rowOf(expense.getId());
+        if (existing >= 0) {
+            write(existing, expense);
+            return;
+        }
+        ensureCapacity(size + 1);
+        int row = size++;
+        write(row, expense);
+        insertSlot(row);
+    }
+
+    public void update(String id, Expense updatedExpense) {
+        int row = rowOf(id);
+        if (row >= 0) {
+            updatedExpense.setId(id);
+            write(row, updatedExpense);
+        }
+    }
+
+    public boolean remove(String id) {
+        int row = rowOf(id);
+        if (row < 0) {
+            return false;
+        }
+        removeSlot(row);
+        int last = --size;
+        if (row != last) {
+            removeSlot(last);
+            copyRow(last, row);
+            insertSlot(row);
+        }
+        descriptions[last] = null;
+        notes[last] = null;
+        otherIds[last] = null;
+        return true;
+    }
+
+    public Expense get(String id) {
+        int row = rowOf(id);
+        return row >= 0 ? materialize(row) : null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public List<Category> getCategories() {
+        return new ArrayList<>(categories);
+    }
+
+    // Queries
+    public long getTotalCents() {
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            total += amountCents[i];
+        }
+        return total;
+    }
+
+    public double getTotalExpenses() {
+        return getTotalCents() / 100.0;
+    }
+
+    public double getTotalExpensesByCategory(Category category) {
+        Integer ordinal = categoryOrdinals.get(category.getId());
+        if (ordinal == null) {
+            return 0;
+        }
+        int target = ordinal;
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            if (categoryColumn[i] == target) {
+                total += amountCents[i];
+            }
+        }
+        return total / 100.0;
+    }
+
+    /**
+     * Sums every category in a single pass; index i holds the cents for ordinal i
+     */
+    public long[] getTotalCentsByCategoryOrdinal() {
+        long[] totals = new long[categories.size()];
+        for (int i = 0; i < size; i++) {
+            int ordinal = categoryColumn[i];
+            if (ordinal != NO_CATEGORY) {
+                totals[ordinal] += amountCents[i];
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Totals for categories that have at least one expense, like ExpenseManager
+     */
+    public Map<Category, Double> getExpensesByCategories() {
+        long[] totals = new long[categories.size()];
+        int[] counts = new int[categories.size()];
+        for (int i = 0; i < size; i++) {
+            int ordinal = categoryColumn[i];
+            if (ordinal != NO_CATEGORY) {
+                totals[ordinal] += amountCents[i];
+                counts[ordinal]++;
+            }
+        }
+        Map<Category, Double> result = new HashMap<>();
+        for (int ordinal = 0; ordinal < totals.length; ordinal++) {
+            if (counts[ordinal] > 0) {
+                result.put(categories.get(ordinal), totals[ordinal] / 100.0);
+            }
+        }
+        return result;
+    }
+
+    public double getTotalExpensesByDateRange(LocalDate start, LocalDate end) {
+        int from = (int) start.toEpochDay();
+        int to = (int) end.toEpochDay();
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            int day = epochDays[i];
+            if (day >= from && day <= to) {
+                total += amountCents[i];
+            }
+        }
+        return total / 100.0;
+    }
+
+    /**
+     * Returns matching expenses ordered by date, like ExpenseManager
+     */
+    public List<Expense> getExpensesByDateRange(LocalDate start, LocalDate end) {
+        int from = (int) start.toEpochDay();
+        int to = (int) end.toEpochDay();
+        int matches = 0;
+        for (int i = 0; i < size; i++) {
+            int day = epochDays[i];
+            if (day >= from && day <= to) {
+                matches++;
+            }
+        }
+
+        // Pack (day, row) pairs so one primitive sort yields date order
+        long[] keys = new long[matches];
+        int k = 0;
+        for (int i = 0; i < size; i++) {
+            int day = epochDays[i];
+            if (day >= from && day <= to) {
+                keys[k++] = ((long) day << 32) | i;
+            }
+        }
+        Arrays.sort(keys);
+
+        List<Expense> result = new ArrayList<>(matches);
+        for (long key : keys) {
+            result.add(materialize((int) key));
+        }
+        return result;
+    }
+
+    public List<Expense> getExpensesByCategory(Category category) {
+        List<Expense> result = new ArrayList<>();
+        Integer ordinal = categoryOrdinals.get(category.getId());
+        if (ordinal == null) {
+            return result;
+        }
+        int target = ordinal;
+        for (int i = 0; i < size; i++) {
+            if (categoryColumn[i] == target) {
+                result.add(materialize(i));
+            }
+        }
+        return result;
+    }
+
+    public List<Expense> getAllExpenses() {
+        List<Expense> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(materialize(i));
+        }
+        return result;
+    }
+
+    // Row encoding
+    private void write(int row, Expense expense) {
+        amountCents[row] = Math.round(expense.getAmount() * 100);
+        epochDays[row] = (int) expense.getDate().toEpochDay();
+        categoryColumn[row] = ordinalOf(expense.getCategory());
+        descriptions[row] = expense.getDescription();
+        notes[row] = expense.getNotes();
+
+        String id = expense.getId();
+        if (isPackedUuid(id)) {
+            idHigh[row] = highBits(id);
+            idLow[row] = lowBits(id);
+            otherIds[row] = null;
+        } else {
+            idHigh[row] = 0;
+            idLow[row] = 0;
+            otherIds[row] = id;
+        }
+        idHashes[row] = mix(id.hashCode());
+    }
+
+    private void copyRow(int from, int to) {
+        amountCents[to] = amountCents[from];
+        epochDays[to] = epochDays[from];
+        categoryColumn[to] = categoryColumn[from];
+        idHigh[to] = idHigh[from];
+        idLow[to] = idLow[from];
+        idHashes[to] = idHashes[from];
+        otherIds[to] = otherIds[from];
+        descriptions[to] = descriptions[from];
+        notes[to] = notes[from];
+    }
+
+    private Expense materialize(int row) {
+        return new Expense(
+                idAt(row),
+                descriptions[row],
+                amountCents[row] / 100.0,
+                categoryColumn[row] != NO_CATEGORY ? categories.get(categoryColumn[row]) : null,
+                LocalDate.ofEpochDay(epochDays[row]),
+                notes[row]
+        );
+    }
+
+    private String idAt(int row) {
+        String other = otherIds[row];
+        return other != null ? other : new UUID(idHigh[row], idLow[row]).toString();
+    }
+
+    private int ordinalOf(Category category) {
+        if (category == null) {
+            return NO_CATEGORY;
+        }
+        Integer ordinal = categoryOrdinals.get(category.getId());
+        if (ordinal == null) {
+            ordinal = categories.size();
+            categories.add(category);
+            categoryOrdinals.put(category.getId(), ordinal);
+        }
+        return ordinal;
+    }
+
+    // Only canonical lower-case UUIDs are packed, since only they come back unchanged from toString()
+    private static boolean isPackedUuid(String id) {
+        if (id.length() != 36) {
+            return false;
+        }
+        for (int i = 0; i < 36; i++) {
+            char c = id.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Parsed in place: lookups run once per get and remove, so they must not allocate
+    private static long highBits(String id) {
+        return hexBits(id, 0, 18);
+    }
+
+    private static long lowBits(String id) {
+        return hexBits(id, 19, 36);
+    }
+
+    private static long hexBits(String id, int start, int end) {
+        long bits = 0;
+        for (int i = start; i < end; i++) {
+            char c = id.charAt(i);
+            if (c != '-') {
+                bits = bits << 4 | Character.digit(c, 16);
+            }
+        }
+        return bits;
+    }
+
+    // Id index
+    private int rowOf(String id) {
+        boolean packed = isPackedUuid(id);
+        long high = packed ? highBits(id) : 0;
+        long low = packed ? lowBits(id) : 0;
+        int mask = idSlots.length - 1;
+        for (int slot = mix(id.hashCode()) & mask; ; slot = (slot + 1) & mask) {
+            int entry = idSlots[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            int row = entry - 1;
+            if (packed) {
+                if (otherIds[row] == null && idHigh[row] == high && idLow[row] == low) {
+                    return row;
+                }
+            } else if (id.equals(otherIds[row])) {
+                return row;
+            }
+        }
+    }
+
+    private void insertSlot(int row) {
+        int mask = idSlots.length - 1;
+        int slot = idHashes[row] & mask;
+        while (idSlots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        idSlots[slot] = row + 1;
+    }
+
+    private void removeSlot(int row) {
+        int mask = idSlots.length - 1;
+        int slot = idHashes[row] & mask;
+        while (idSlots[slot] != row + 1) {
+            slot = (slot + 1) & mask;
+        }
+
+        // Backward-shift deletion keeps probe chains intact without tombstones
+        int hole = slot;
+        for (int next = (hole + 1) & mask; idSlots[next] != 0; next = (next + 1) & mask) {
+            int home = idHashes[idSlots[next] - 1] & mask;
+            boolean movable = hole <= next
+                    ? home <= hole || home > next
+                    : home <= hole && home > next;
+            if (movable) {
+                idSlots[hole] = idSlots[next];
+                hole = next;
+            }
+        }
+        idSlots[hole] = 0;
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // Storage growth
+    private void allocate(int capacity) {
+        amountCents = new long[capacity];
+        epochDays = new int[capacity];
+        categoryColumn = new int[capacity];
+        idHigh = new long[capacity];
+        idLow = new long[capacity];
+        idHashes = new int[capacity];
+        otherIds = new String[capacity];
+        descriptions = new String[capacity];
+        notes = new String[capacity];
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > amountCents.length) {
+            int capacity = Math.max(required, amountCents.length + (amountCents.length >> 1));
+            amountCents = Arrays.copyOf(amountCents, capacity);
+            epochDays = Arrays.copyOf(epochDays, capacity);
+            categoryColumn = Arrays.copyOf(categoryColumn, capacity);
+            idHigh = Arrays.copyOf(idHigh, capacity);
+            idLow = Arrays.copyOf(idLow, capacity);
+            idHashes = Arrays.copyOf(idHashes, capacity);
+            otherIds = Arrays.copyOf(otherIds, capacity);
+            descriptions = Arrays.copyOf(descriptions, capacity);
+            notes = Arrays.copyOf(notes, capacity);
+        }
+
+        // Keep the id table at most half full
+        if (required * 2 > idSlots.length) {
+            int slots = Integer.highestOneBit(required * 2 - 1) << 1;
+            idSlots = new int[slots];
+            for (int row = 0; row < size; row++) {
+                insertSlot(row);
+            }
+        }
+    }
+}
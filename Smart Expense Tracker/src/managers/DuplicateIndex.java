@@ -0,0 +1,186 @@
+package managers;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import models.Expense;
+
+/**
+ * Fingerprint index for spotting duplicate expenses in constant time.
+ *
+ * Expenses are keyed by date and amount in cents; a lookup checks that key,
+ * or the keys one day either side, and then compares normalized
+ * descriptions where the mode asks for it. A Bloom filter in front of the
+ * map answers most lookups for genuinely new expenses without touching it.
+ * Kept up to date by ExpenseManager under its lock.
+ */
+public final class DuplicateIndex {
+    public enum Mode {
+        /**
+         * Same date, same amount in cents and the same description once
+         * case, punctuation and spacing are ignored
+         */
+        EXACT,
+        /**
+         * Same amount in cents dated up to a day apart, whatever the description
+         */
+        FUZZY
+    }
+
+    static final int FUZZY_DAYS = 1;
+
+    // Date and cents key to one Expense, or a List of them when several share it
+    private final Map<Long, Object> byKey = new HashMap<>();
+    private BloomFilter filter = new BloomFilter(0);
+    private int size;
+
+    void add(Expense expense) {
+        long key = key(expense.getDate().toEpochDay(), cents(expense.getAmount()));
+        Object current = byKey.putIfAbsent(key, expense);
+        if (current instanceof List) {
+            @SuppressWarnings("unchecked")
+            List<Expense> list = (List<Expense>) current;
+            list.add(expense);
+        } else if (current != null) {
+            List<Expense> list = new ArrayList<>(2);
+            list.add((Expense) current);
+            list.add(expense);
+            byKey.put(key, list);
+        }
+
+        if (++size > filter.getCapacity()) {
+            rebuildFilter();
+        } else {
+            filter.add(key);
+        }
+    }
+
+    void remove(Expense expense) {
+        long key = key(expense.getDate().toEpochDay(), cents(expense.getAmount()));
+        Object current = byKey.get(key);
+        if (current == expense) {
+            byKey.remove(key);
+            size--;
+        } else if (current instanceof List) {
+            List<?> list = (List<?>) current;
+            // Identity, not equals: two expenses may share every field
+            for (int i = 0; i < list.size(); i++) {
+                if (list.get(i) == expense) {
+                    list.remove(i);
+                    size--;
+                    break;
+                }
+            }
+            if (list.size() == 1) {
+                byKey.put(key, list.get(0));
+            }
+        }
+        // The filter keeps the key's bits until the next rebuild; lookups then just miss in the map
+    }
+
+    // Doubles the capacity and drops bits left behind by removed expenses
+    private void rebuildFilter() {
+        filter = new BloomFilter(size * 2);
+        for (Long key : byKey.keySet()) {
+            filter.add(key);
+        }
+    }
+
+    /**
+     * False when no indexed expense can match; true means "look closer"
+     */
+    boolean mightMatch(Expense candidate, Mode mode) {
+        long day = candidate.getDate().toEpochDay();
+        long cents = cents(candidate.getAmount());
+        int days = mode == Mode.FUZZY ? FUZZY_DAYS : 0;
+        for (long d = day - days; d <= day + days; d++) {
+            if (filter.mightContain(key(d, cents))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Indexed expenses the candidate would duplicate, never the candidate itself
+     */
+    List<Expense> find(Expense candidate, Mode mode) {
+        if (!mightMatch(candidate, mode)) {
+            return List.of();
+        }
+        long day = candidate.getDate().toEpochDay();
+        long cents = cents(candidate.getAmount());
+        String description = mode == Mode.EXACT ? normalize(candidate.getDescription()) : null;
+        int days = mode == Mode.FUZZY ? FUZZY_DAYS : 0;
+
+        List<Expense> matches = new ArrayList<>();
+        for (long d = day - days; d <= day + days; d++) {
+            Object current = byKey.get(key(d, cents));
+            if (current instanceof Expense) {
+                addIfMatch(matches, (Expense) current, candidate, d, cents, description);
+            } else if (current != null) {
+                for (Object expense : (List<?>) current) {
+                    addIfMatch(matches, (Expense) expense, candidate, d, cents, description);
+                }
+            }
+        }
+        return matches;
+    }
+
+    // Keys can collide, so confirm the fields themselves
+    private static void addIfMatch(List<Expense> matches, Expense expense, Expense candidate,
+                                   long day, long cents, String description) {
+        if (expense == candidate || expense.getId().equals(candidate.getId())
+                || expense.getDate().toEpochDay() != day || cents(expense.getAmount()) != cents) {
+            return;
+        }
+        if (description == null || description.equals(normalize(expense.getDescription()))) {
+            matches.add(expense);
+        }
+    }
+
+    // Epoch day in the high bits, cents in the low; collisions only cost a comparison
+    private static long key(long epochDay, long cents) {
+        return epochDay << 40 ^ cents;
+    }
+
+    static long cents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    /**
+     * Lower-case letters and digits, with every other run of characters
+     * turned into a single space: "Uber *Trip " becomes "uber trip"
+     */
+    static String normalize(String description) {
+        if (description == null) {
+            return "";
+        }
+        StringBuilder normalized = new StringBuilder(description.length());
+        boolean gap = false;
+        for (int i = 0; i < description.length(); i++) {
+            char c = description.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (gap && normalized.length() > 0) {
+                    normalized.append(' ');
+                }
+                normalized.append(Character.toLowerCase(c));
+                gap = false;
+            } else {
+                gap = true;
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Months whose expenses a lookup for this date can reach
+     */
+    static Set<YearMonth> monthsAround(LocalDate date, Mode mode) {
+        int days = mode == Mode.FUZZY ? FUZZY_DAYS : 0;
+        Set<YearMonth> months = new HashSet<>();
+        months.add(YearMonth.from(date.minusDays(days)));
+        months.add(YearMonth.from(date.plusDays(days)));
+        return months;
+    }
+}
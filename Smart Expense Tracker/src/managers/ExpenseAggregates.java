@@ -0,0 +1,55 @@
+package managers;
+
+import java.time.YearMonth;
+import java.util.Collections;
+import java.util.Map;
+import models.Category;
+
+/**
+ * Grand, per-category and per-month totals read together
+ */
+public class ExpenseAggregates {
+    private final long version;
+    private final int count;
+    private final double total;
+    private final Map<Category, Double> categoryTotals;
+    private final Map<YearMonth, Double> monthTotals;
+    
+    ExpenseAggregates(long version, int count, double total,
+                      Map<Category, Double> categoryTotals, Map<YearMonth, Double> monthTotals) {
+        this.version = version;
+        this.count = count;
+        this.total = total;
+        this.categoryTotals = Collections.unmodifiableMap(categoryTotals);
+        this.monthTotals = Collections.unmodifiableMap(monthTotals);
+    }
+    
+    /**
+     * Snapshot version the totals were computed from
+     */
+    public long getVersion() {
+        return version;
+    }
+    
+    public int getCount() {
+        return count;
+    }
+    
+    public double getTotal() {
+        return total;
+    }
+    
+    /**
+     * Totals for categories that have at least one expense
+     */
+    public Map<Category, Double> getCategoryTotals() {
+        return categoryTotals;
+    }
+    
+    /**
+     * Totals for months that have at least one expense, oldest first
+     */
+    public Map<YearMonth, Double> getMonthTotals() {
+        return monthTotals;
+    }
+}
@@ -0,0 +1,96 @@
+package managers;
+
+import java.util.Collections;
+import java.util.List;
+import models.Category;
+import models.Expense;
+
+/**
+ * Describes one change to the data held by an ExpenseManager
+ */
+public class ExpenseChangeEvent {
+    public enum Type {
+        ADDED,
+        UPDATED,
+        DELETED,
+        BULK_REPLACED,
+        CATEGORY_ADDED
+    }
+    
+    private final Type type;
+    private final long version;
+    private final List<Expense> expenses;
+    private final List<Expense> previousExpenses;
+    private final Category category;
+    
+    private ExpenseChangeEvent(Type type, long version, List<Expense> expenses,
+                               List<Expense> previousExpenses, Category category) {
+        this.type = type;
+        this.version = version;
+        this.expenses = Collections.unmodifiableList(expenses);
+        this.previousExpenses = Collections.unmodifiableList(previousExpenses);
+        this.category = category;
+    }
+    
+    static ExpenseChangeEvent added(long version, List<Expense> added) {
+        return new ExpenseChangeEvent(Type.ADDED, version, added, List.of(), null);
+    }
+    
+    static ExpenseChangeEvent updated(long version, Expense updated, Expense previous) {
+        return new ExpenseChangeEvent(Type.UPDATED, version, List.of(updated), List.of(previous), null);
+    }
+    
+    static ExpenseChangeEvent deleted(long version, Expense deleted) {
+        return new ExpenseChangeEvent(Type.DELETED, version, List.of(), List.of(deleted), null);
+    }
+    
+    static ExpenseChangeEvent bulkReplaced(long version, List<Expense> expenses) {
+        return new ExpenseChangeEvent(Type.BULK_REPLACED, version, expenses, List.of(), null);
+    }
+    
+    static ExpenseChangeEvent categoryAdded(long version, Category category) {
+        return new ExpenseChangeEvent(Type.CATEGORY_ADDED, version, List.of(), List.of(), category);
+    }
+    
+    public Type getType() {
+        return type;
+    }
+    
+    /**
+     * Snapshot version the manager reached with this change
+     */
+    public long getVersion() {
+        return version;
+    }
+    
+    /**
+     * New values: added or updated expenses, or the full set after a bulk replace
+     */
+    public List<Expense> getExpenses() {
+        return expenses;
+    }
+    
+    /**
+     * Old values: the expense an update replaced, or the deleted expense
+     */
+    public List<Expense> getPreviousExpenses() {
+        return previousExpenses;
+    }
+    
+    /**
+     * The new category for CATEGORY_ADDED events, otherwise null
+     */
+    public Category getCategory() {
+        return category;
+    }
+    
+    @Override
+    public String toString() {
+        return "ExpenseChangeEvent{" +
+                "type=" + type +
+                ", version=" + version +
+                ", expenses=" + expenses.size() +
+                ", previousExpenses=" + previousExpenses.size() +
+                '}';
+    }
+}
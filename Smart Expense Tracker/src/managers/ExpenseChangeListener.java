@@ -0,0 +1,12 @@
+package managers;
+
+/**
+ * Receives change notifications from an ExpenseManager.
+ *
+ * Called on the thread that made the change, after the manager has released
+ * its lock; Swing listeners must hop to the EDT before touching components.
+ */
+@FunctionalInterface
+public interface ExpenseChangeListener {
+    void expensesChanged(ExpenseChangeEvent event);
+}
@@ -1,142 +1,1058 @@
 package managers;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.time.YearMonth;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
 import models.Category;
 import models.Expense;
 
 /**
- * Manages all expense operations
+ * Manages all expense operations.
+ *
+ * Thread-safe: reads share a read lock and run in parallel, mutations take
+ * the write lock, so loading, importing and reporting can run off the EDT
+ * while the UI edits expenses.
+ *
+ * When opened on a segment source, older months stay on disk until a query
+ * or edit reaches into them. Totals and counts always cover every month.
+ *
+ * Columnar mode, turned on with -Dexpense.columnar=true, also keeps the
+ * loaded rows in a ColumnarExpenseStore so range totals are primitive array
+ * scans. The Expense objects stay, as the indexes and the UI hold them.
  */
 public class ExpenseManager {
-    private List<Expense> expenses;
+    public static final String COLUMNAR_PROPERTY = "expense.columnar";
+    
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    // Keyed by expense id; insertion order doubles as the list order
+    private Map<String, Expense> expenses;
+    // Secondary index: expenses bucketed by date, buckets keyed by id
+    private NavigableMap<LocalDate, Map<String, Expense>> expensesByDate;
+    // Running totals, updated on every mutation
+    private Map<String, RunningTotal> categoryTotals;
+    private Map<YearMonth, RunningTotal> monthTotals;
+    private double totalAmount;
+    // Date and amount fingerprints of the loaded expenses
+    private DuplicateIndex duplicates;
+    // Words of the loaded expenses' descriptions and notes; built by the
+    // first text search and kept up to date from then on
+    private SearchIndex searchIndex;
+    // Primitive copy of the loaded rows; null unless columnar
+    private final boolean columnar;
+    private ColumnarExpenseStore columns;
     private List<Category> categories;
     
+    // Months stored in segments but not read yet; their manifest totals are
+    // already folded into the running totals
+    private ExpenseSegmentSource segmentSource;
+    private final NavigableMap<YearMonth, SegmentSummary> unloadedSegments = new TreeMap<>();
+    private int unloadedCount;
+    private final Object segmentLoadLock = new Object();
+    // Months edited since the last takeChangedSegments()
+    private final Set<YearMonth> changedMonths = new HashSet<>();
+    
+    // Bumped on every expense mutation; the cached snapshot is reused while it matches
+    private long version;
+    private volatile ExpenseSnapshot snapshot;
+    
+    private final List<ExpenseChangeListener> listeners = new CopyOnWriteArrayList<>();
+    
     public ExpenseManager() {
-        this.expenses = new ArrayList<>();
+        this(Boolean.getBoolean(COLUMNAR_PROPERTY));
+    }
+    
+    public ExpenseManager(boolean columnar) {
+        this.expenses = new LinkedHashMap<>();
+        this.expensesByDate = new TreeMap<>();
+        this.categoryTotals = new HashMap<>();
+        this.monthTotals = new HashMap<>();
+        this.duplicates = new DuplicateIndex();
         this.categories = new ArrayList<>(Arrays.asList(Category.getDefaultCategories()));
+        this.columnar = columnar;
+        this.columns = columnar ? new ColumnarExpenseStore(categories) : null;
+    }
+    
+    public boolean isColumnar() {
+        return columnar;
+    }
+    
+    // Change notification
+    public void addExpenseChangeListener(ExpenseChangeListener listener) {
+        listeners.add(listener);
+    }
+    
+    public void removeExpenseChangeListener(ExpenseChangeListener listener) {
+        listeners.remove(listener);
+    }
+    
+    private void fireChange(ExpenseChangeEvent event) {
+        if (event == null) {
+            return;
+        }
+        for (ExpenseChangeListener listener : listeners) {
+            listener.expensesChanged(event);
+        }
     }
     
     // Expense operations
     public void addExpense(Expense expense) {
-        expenses.add(expense);
+        // Ids are expected to be new; use updateExpense to move an existing expense
+        if (hasUnloadedSegments()) {
+            loadSegments(List.of(YearMonth.from(expense.getDate())));
+        }
+        ExpenseChangeEvent event;
+        lock.writeLock().lock();
+        try {
+            Expense previous = putExpense(expense);
+            version++;
+            event = previous != null
+                    ? ExpenseChangeEvent.updated(version, expense, previous)
+                    : ExpenseChangeEvent.added(version, List.of(expense));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        fireChange(event);
+    }
+    
+    /**
+     * Adds many expenses under one lock and publishes a single ADDED event
+     */
+    public void addExpenses(Collection<Expense> newExpenses) {
+        if (newExpenses.isEmpty()) {
+            return;
+        }
+        if (hasUnloadedSegments()) {
+            Set<YearMonth> months = new HashSet<>();
+            for (Expense expense : newExpenses) {
+                months.add(YearMonth.from(expense.getDate()));
+            }
+            loadSegments(months);
+        }
+        ExpenseChangeEvent event;
+        lock.writeLock().lock();
+        try {
+            putExpenses(newExpenses);
+            version++;
+            event = ExpenseChangeEvent.added(version, new ArrayList<>(newExpenses));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        fireChange(event);
     }
     
     public void updateExpense(String id, Expense updatedExpense) {
-        for (int i = 0; i < expenses.size(); i++) {
-            if (expenses.get(i).getId().equals(id)) {
+        loadSegmentsContaining(id);
+        if (hasUnloadedSegments()) {
+            loadSegments(List.of(YearMonth.from(updatedExpense.getDate())));
+        }
+        ExpenseChangeEvent event = null;
+        lock.writeLock().lock();
+        try {
+            Expense previous = expenses.get(id);
+            if (previous != null) {
                 updatedExpense.setId(id);
-                expenses.set(i, updatedExpense);
-                break;
+                // Replacing an existing key keeps its position in iteration order
+                expenses.put(id, updatedExpense);
+                unindex(previous);
+                index(updatedExpense);
+                changedMonths.add(YearMonth.from(previous.getDate()));
+                changedMonths.add(YearMonth.from(updatedExpense.getDate()));
+                version++;
+                event = ExpenseChangeEvent.updated(version, updatedExpense, previous);
             }
+        } finally {
+            lock.writeLock().unlock();
         }
+        fireChange(event);
     }
     
     public void deleteExpense(String id) {
-        expenses.removeIf(expense -> expense.getId().equals(id));
+        loadSegmentsContaining(id);
+        ExpenseChangeEvent event = null;
+        lock.writeLock().lock();
+        try {
+            Expense removed = expenses.remove(id);
+            if (removed != null) {
+                unindex(removed);
+                changedMonths.add(YearMonth.from(removed.getDate()));
+                version++;
+                event = ExpenseChangeEvent.deleted(version, removed);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        fireChange(event);
     }
     
     public Expense getExpenseById(String id) {
-        return expenses.stream()
-                .filter(expense -> expense.getId().equals(id))
-                .findFirst()
-                .orElse(null);
+        loadSegmentsContaining(id);
+        lock.readLock().lock();
+        try {
+            return expenses.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Whether the expense is in memory. Unlike getExpenseById this never
+     * reads months still on disk; load the month it would be in first.
+     */
+    public boolean containsExpense(String id) {
+        lock.readLock().lock();
+        try {
+            return expenses.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Reads these months now if they are still on disk
+     */
+    public void loadMonths(Collection<YearMonth> months) {
+        loadSegments(months);
     }
     
     public List<Expense> getAllExpenses() {
-        return new ArrayList<>(expenses);
+        loadSegments(null, null);
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(expenses.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public int getExpenseCount() {
+        lock.readLock().lock();
+        try {
+            return expenses.size() + unloadedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Returns an immutable view of all expenses, rebuilt only after a change
+     */
+    public ExpenseSnapshot getSnapshot() {
+        loadSegments(null, null);
+        lock.readLock().lock();
+        try {
+            ExpenseSnapshot current = snapshot;
+            if (current == null || current.getVersion() != version) {
+                current = new ExpenseSnapshot(version, expenses.values());
+                snapshot = current;
+            }
+            return current;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * The current snapshot's expenses, newest first. Read off the date index
+     * in one pass rather than sorted, and kept on the snapshot for reuse.
+     */
+    public List<Expense> getSortedByDate() {
+        ExpenseSnapshot current = getSnapshot();
+        if (!current.hasSortedByDate()) {
+            lock.readLock().lock();
+            try {
+                if (current.getVersion() == version && expenses.size() == current.size()) {
+                    Expense[] sorted = new Expense[current.size()];
+                    int i = 0;
+                    // Days newest first; within a day, insertion order as a stable sort would keep it
+                    for (Map<String, Expense> bucket : expensesByDate.descendingMap().values()) {
+                        for (Expense expense : bucket.values()) {
+                            sorted[i++] = expense;
+                        }
+                    }
+                    current.setSortedByDate(sorted);
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        return current.sortedByDate();
     }
     
     public List<Expense> getExpensesByDateRange(LocalDate start, LocalDate end) {
-        return expenses.stream()
-                .filter(expense -> !expense.getDate().isBefore(start) && !expense.getDate().isAfter(end))
-                .collect(Collectors.toList());
+        List<Expense> result = new ArrayList<>();
+        if (start.isAfter(end)) {
+            return result;
+        }
+        loadSegments(YearMonth.from(start), YearMonth.from(end));
+        lock.readLock().lock();
+        try {
+            for (Map<String, Expense> bucket : expensesByDate.subMap(start, true, end, true).values()) {
+                result.addAll(bucket.values());
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
     }
     
     public List<Expense> getExpensesByCategory(Category category) {
-        return expenses.stream()
-                .filter(expense -> expense.getCategory().equals(category))
-                .collect(Collectors.toList());
+        loadSegments(null, null);
+        lock.readLock().lock();
+        try {
+            return expenses.values().stream()
+                    .filter(expense -> expense.getCategory().equals(category))
+                    .collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
     }
     
     public List<Expense> getExpensesByMonth(YearMonth month) {
-        return expenses.stream()
-                .filter(expense -> YearMonth.from(expense.getDate()).equals(month))
-                .collect(Collectors.toList());
+        return getExpensesByDateRange(month.atDay(1), month.atEndOfMonth());
+    }
+    
+    /**
+     * Visits the expenses dated from start to end, inclusive, oldest first,
+     * straight from the date index. Null leaves that end open; only the months
+     * in range are loaded. Each month is copied out under the read lock and
+     * visited outside it, so a slow visitor, such as one writing to disk, never
+     * holds up changes. A change made during the walk shows up only in the
+     * months not yet copied, and the total given to begin() is the count
+     * when the walk started.
+     *
+     * @return false if the visitor stopped the walk early
+     */
+    public <E extends Exception> boolean forEachInRange(LocalDate start, LocalDate end, ExpenseVisitor<E> visitor) throws E {
+        if (start != null && end != null && start.isAfter(end)) {
+            visitor.begin(0);
+            return true;
+        }
+        loadSegments(start != null ? YearMonth.from(start) : null, end != null ? YearMonth.from(end) : null);
+        int total = 0;
+        LocalDate next;
+        lock.readLock().lock();
+        try {
+            NavigableMap<LocalDate, Map<String, Expense>> range = expensesByDate;
+            if (start != null) {
+                range = range.tailMap(start, true);
+            }
+            if (end != null) {
+                range = range.headMap(end, true);
+            }
+            for (Map<String, Expense> bucket : range.values()) {
+                total += bucket.size();
+            }
+            next = range.isEmpty() ? null : range.firstKey();
+        } finally {
+            lock.readLock().unlock();
+        }
+        visitor.begin(total);
+        
+        List<Expense> month = new ArrayList<>();
+        while (next != null) {
+            LocalDate monthEnd = YearMonth.from(next).atEndOfMonth();
+            if (end != null && end.isBefore(monthEnd)) {
+                monthEnd = end;
+            }
+            month.clear();
+            lock.readLock().lock();
+            try {
+                for (Map<String, Expense> bucket : expensesByDate.subMap(next, true, monthEnd, true).values()) {
+                    month.addAll(bucket.values());
+                }
+                next = expensesByDate.higherKey(monthEnd);
+                if (next != null && end != null && next.isAfter(end)) {
+                    next = null;
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            for (Expense expense : month) {
+                if (!visitor.visit(expense)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    
+    // Duplicate detection
+    /**
+     * Stored expenses that the candidate looks like a copy of, loading the
+     * months around its date first. Empty when the candidate is new.
+     */
+    public List<Expense> findDuplicates(Expense candidate, DuplicateIndex.Mode mode) {
+        if (hasUnloadedSegments()) {
+            loadSegments(DuplicateIndex.monthsAround(candidate.getDate(), mode));
+        }
+        lock.readLock().lock();
+        try {
+            return duplicates.find(candidate, mode);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Drops incoming expenses that duplicate stored ones. Each stored expense
+     * cancels out at most one incoming expense, so re-importing an overlapping
+     * statement skips exactly the rows already present, while repeated
+     * identical rows beyond those are kept.
+     *
+     * @return the incoming expenses that are new, in their original order
+     */
+    public List<Expense> withoutDuplicates(Collection<Expense> incoming, DuplicateIndex.Mode mode) {
+        if (hasUnloadedSegments()) {
+            Set<YearMonth> months = new HashSet<>();
+            for (Expense expense : incoming) {
+                months.addAll(DuplicateIndex.monthsAround(expense.getDate(), mode));
+            }
+            loadSegments(months);
+        }
+        List<Expense> fresh = new ArrayList<>(incoming.size());
+        Set<Expense> matched = Collections.newSetFromMap(new IdentityHashMap<>());
+        lock.readLock().lock();
+        try {
+            for (Expense expense : incoming) {
+                // The Bloom filter settles most new rows without a map lookup
+                boolean duplicate = false;
+                if (duplicates.mightMatch(expense, mode)) {
+                    for (Expense match : duplicates.find(expense, mode)) {
+                        if (matched.add(match)) {
+                            duplicate = true;
+                            break;
+                        }
+                    }
+                }
+                if (!duplicate) {
+                    fresh.add(expense);
+                }
+            }
+            return fresh;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // Search
+    /**
+     * Expenses passing every filter, newest first. Each word of the query
+     * has to start a word of the description or notes, so "star cof" finds
+     * "Starbucks coffee". A null or blank query, null dates and null
+     * categories leave that filter out; with a date range only the months
+     * in it are loaded.
+     */
+    public List<Expense> search(String query, LocalDate from, LocalDate to, Collection<Category> categories) {
+        if (from != null && to != null && from.isAfter(to)) {
+            return new ArrayList<>();
+        }
+        Set<String> categoryIds = null;
+        if (categories != null) {
+            categoryIds = new HashSet<>();
+            for (Category category : categories) {
+                categoryIds.add(category.getId());
+            }
+        }
+        boolean hasQuery = query != null && !query.isBlank();
+        if (!hasQuery && from == null && to == null) {
+            List<Expense> sorted = getSortedByDate();
+            return categoryIds == null ? sorted : filterByCategory(sorted, categoryIds);
+        }
+        
+        loadSegments(from != null ? YearMonth.from(from) : null, to != null ? YearMonth.from(to) : null);
+        lock.readLock().lock();
+        try {
+            if (hasQuery) {
+                if (searchIndex == null) {
+                    buildSearchIndex();
+                }
+                return searchIndex.search(query, from, to, categoryIds);
+            }
+            NavigableMap<LocalDate, Map<String, Expense>> range = expensesByDate;
+            if (from != null) {
+                range = range.tailMap(from, true);
+            }
+            if (to != null) {
+                range = range.headMap(to, true);
+            }
+            List<Expense> result = new ArrayList<>();
+            for (Map<String, Expense> bucket : range.descendingMap().values()) {
+                result.addAll(bucket.values());
+            }
+            return categoryIds == null ? result : filterByCategory(result, categoryIds);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // Called holding the read lock; swaps it for the write lock and back again
+    private void buildSearchIndex() {
+        lock.readLock().unlock();
+        lock.writeLock().lock();
+        try {
+            if (searchIndex == null) {
+                // Published only when complete, so a failure leaves no partial index behind
+                SearchIndex index = new SearchIndex();
+                for (Expense expense : expenses.values()) {
+                    index.add(expense);
+                }
+                searchIndex = index;
+            }
+        } finally {
+            // The caller unlocks the read lock, even when the build failed
+            lock.readLock().lock();
+            lock.writeLock().unlock();
+        }
+    }
+    
+    private static List<Expense> filterByCategory(List<Expense> expenses, Set<String> categoryIds) {
+        List<Expense> result = new ArrayList<>();
+        for (Expense expense : expenses) {
+            if (categoryIds.contains(expense.getCategory().getId())) {
+                result.add(expense);
+            }
+        }
+        return result;
     }
     
     // Statistics
     public double getTotalExpenses() {
-        return expenses.stream()
-                .mapToDouble(Expense::getAmount)
-                .sum();
+        lock.readLock().lock();
+        try {
+            return totalAmount;
+        } finally {
+            lock.readLock().unlock();
+        }
     }
     
     public double getTotalExpensesByCategory(Category category) {
-        return expenses.stream()
-                .filter(expense -> expense.getCategory().equals(category))
-                .mapToDouble(Expense::getAmount)
-                .sum();
+        lock.readLock().lock();
+        try {
+            return sumOf(categoryTotals.get(category.getId()));
+        } finally {
+            lock.readLock().unlock();
+        }
     }
     
     public double getTotalExpensesByMonth(YearMonth month) {
-        return getExpensesByMonth(month).stream()
-                .mapToDouble(Expense::getAmount)
-                .sum();
+        lock.readLock().lock();
+        try {
+            return sumOf(monthTotals.get(month));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Sum of the expenses dated from start to end, inclusive. Only the months
+     * in range are loaded; in columnar mode the sum is one pass over the date
+     * and amount columns.
+     */
+    public double getTotalExpensesByDateRange(LocalDate start, LocalDate end) {
+        if (start.isAfter(end)) {
+            return 0;
+        }
+        loadSegments(YearMonth.from(start), YearMonth.from(end));
+        lock.readLock().lock();
+        try {
+            if (columns != null) {
+                return columns.getTotalExpensesByDateRange(start, end);
+            }
+            double total = 0;
+            for (Map<String, Expense> bucket : expensesByDate.subMap(start, true, end, true).values()) {
+                for (Expense expense : bucket.values()) {
+                    total += expense.getAmount();
+                }
+            }
+            return total;
+        } finally {
+            lock.readLock().unlock();
+        }
     }
     
     public Map<Category, Double> getExpensesByCategories() {
-        Map<Category, Double> categoryTotals = new HashMap<>();
-        for (Category category : categories) {
-            double total = getTotalExpensesByCategory(category);
-            if (total > 0) {
-                categoryTotals.put(category, total);
+        Map<Category, Double> result = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            // Same rule as getTotals(): every category with at least one expense
+            for (Category category : categories) {
+                RunningTotal total = categoryTotals.get(category.getId());
+                if (total != null && total.count > 0) {
+                    result.put(category, total.sum);
+                }
             }
+            return result;
+        } finally {
+            lock.readLock().unlock();
         }
-        return categoryTotals;
     }
     
     public Map<YearMonth, Double> getMonthlyExpenses(int months) {
         Map<YearMonth, Double> monthlyTotals = new LinkedHashMap<>();
         YearMonth currentMonth = YearMonth.now();
         
-        for (int i = months - 1; i >= 0; i--) {
-            YearMonth month = currentMonth.minusMonths(i);
-            double total = getTotalExpensesByMonth(month);
-            monthlyTotals.put(month, total);
+        lock.readLock().lock();
+        try {
+            for (int i = months - 1; i >= 0; i--) {
+                YearMonth month = currentMonth.minusMonths(i);
+                monthlyTotals.put(month, sumOf(monthTotals.get(month)));
+            }
+            return monthlyTotals;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Grand, per-category and per-month totals read from the running totals
+     * under one lock, so they always agree with each other. Costs one step
+     * per category and month, and leaves unloaded months on disk.
+     */
+    public ExpenseAggregates getTotals() {
+        lock.readLock().lock();
+        try {
+            Map<Category, Double> byCategory = new HashMap<>();
+            for (Category category : categories) {
+                RunningTotal total = categoryTotals.get(category.getId());
+                if (total != null && total.count > 0) {
+                    byCategory.put(category, total.sum);
+                }
+            }
+            Map<YearMonth, Double> byMonth = new TreeMap<>();
+            monthTotals.forEach((month, total) -> {
+                if (total.count > 0) {
+                    byMonth.put(month, total.sum);
+                }
+            });
+            return new ExpenseAggregates(version, expenses.size() + unloadedCount, totalAmount,
+                    byCategory, byMonth);
+        } finally {
+            lock.readLock().unlock();
         }
-        
-        return monthlyTotals;
     }
     
     // Category operations
     public List<Category> getCategories() {
-        return new ArrayList<>(categories);
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(categories);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
     
     public void addCategory(Category category) {
-        categories.add(category);
+        ExpenseChangeEvent event;
+        lock.writeLock().lock();
+        try {
+            categories.add(category);
+            event = ExpenseChangeEvent.categoryAdded(version, category);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        fireChange(event);
     }
     
     public Category getCategoryById(String id) {
-        return categories.stream()
-                .filter(category -> category.getId().equals(id))
-                .findFirst()
-                .orElse(null);
+        lock.readLock().lock();
+        try {
+            return categories.stream()
+                    .filter(category -> category.getId().equals(id))
+                    .findFirst()
+                    .orElse(null);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
     
     // Bulk operations
     public void setExpenses(List<Expense> expenses) {
-        this.expenses = new ArrayList<>(expenses);
+        ExpenseChangeEvent event;
+        lock.writeLock().lock();
+        try {
+            reset();
+            for (Expense expense : expenses) {
+                putExpense(expense);
+            }
+            version++;
+            event = ExpenseChangeEvent.bulkReplaced(version, new ArrayList<>(this.expenses.values()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        fireChange(event);
     }
     
     public void setCategories(List<Category> categories) {
-        this.categories = new ArrayList<>(categories);
+        lock.writeLock().lock();
+        try {
+            this.categories = new ArrayList<>(categories);
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
     
     public void clear() {
-        expenses.clear();
+        ExpenseChangeEvent event;
+        lock.writeLock().lock();
+        try {
+            reset();
+            version++;
+            event = ExpenseChangeEvent.bulkReplaced(version, List.of());
+        } finally {
+            lock.writeLock().unlock();
+        }
+        fireChange(event);
+    }
+    
+    /**
+     * Replaces all expenses with the months stored in a segment source.
+     * Months from eagerFrom onwards are read now; older ones are read the
+     * first time a query or edit reaches into them.
+     */
+    public void openSegments(ExpenseSegmentSource source, YearMonth eagerFrom) throws IOException {
+        List<SegmentSummary> segments = source.getSegments();
+        lock.writeLock().lock();
+        try {
+            reset();
+            // Everything in memory now matches what is stored
+            changedMonths.clear();
+            segmentSource = source;
+            for (SegmentSummary segment : segments) {
+                unloadedSegments.put(segment.getMonth(), segment);
+                fold(segment);
+            }
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        
+        try {
+            loadSegments(eagerFrom, null);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        
+        ExpenseChangeEvent event;
+        lock.readLock().lock();
+        try {
+            event = ExpenseChangeEvent.bulkReplaced(version, new ArrayList<>(expenses.values()));
+        } finally {
+            lock.readLock().unlock();
+        }
+        fireChange(event);
+    }
+    
+    /**
+     * Returns the current expenses of every month edited since the last call
+     * and forgets those edits; an empty list means the month is now empty.
+     * Pass the months to markSegmentsChanged if saving them fails.
+     */
+    public Map<YearMonth, List<Expense>> takeChangedSegments() {
+        lock.writeLock().lock();
+        try {
+            Map<YearMonth, List<Expense>> changed = new TreeMap<>();
+            for (YearMonth month : changedMonths) {
+                List<Expense> monthExpenses = new ArrayList<>();
+                for (Map<String, Expense> bucket : expensesByDate
+                        .subMap(month.atDay(1), true, month.atEndOfMonth(), true).values()) {
+                    monthExpenses.addAll(bucket.values());
+                }
+                changed.put(month, monthExpenses);
+            }
+            changedMonths.clear();
+            return changed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public void markSegmentsChanged(Collection<YearMonth> months) {
+        lock.writeLock().lock();
+        try {
+            changedMonths.addAll(months);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // Lazy segment loading (callers must not hold the lock)
+    private boolean hasUnloadedSegments() {
+        lock.readLock().lock();
+        try {
+            return !unloadedSegments.isEmpty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Reads the unloaded months between from and to, inclusive; null leaves that end open
+     */
+    private void loadSegments(YearMonth from, YearMonth to) {
+        List<YearMonth> months;
+        lock.readLock().lock();
+        try {
+            NavigableMap<YearMonth, SegmentSummary> pending = unloadedSegments;
+            if (from != null) {
+                pending = pending.tailMap(from, true);
+            }
+            if (to != null) {
+                pending = pending.headMap(to, true);
+            }
+            months = new ArrayList<>(pending.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+        loadSegments(months);
+    }
+    
+    // An id missing from memory can only be in a month not read yet
+    private void loadSegmentsContaining(String id) {
+        lock.readLock().lock();
+        try {
+            if (unloadedSegments.isEmpty() || expenses.containsKey(id)) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        loadSegments(null, null);
+    }
+    
+    private void loadSegments(Collection<YearMonth> months) {
+        if (months.isEmpty()) {
+            return;
+        }
+        // One loader at a time; file reads run outside the manager lock
+        synchronized (segmentLoadLock) {
+            for (YearMonth month : months) {
+                ExpenseSegmentSource source;
+                List<Category> knownCategories;
+                lock.readLock().lock();
+                try {
+                    if (!unloadedSegments.containsKey(month)) {
+                        continue;
+                    }
+                    source = segmentSource;
+                    knownCategories = new ArrayList<>(categories);
+                } finally {
+                    lock.readLock().unlock();
+                }
+                
+                List<Expense> loaded;
+                try {
+                    loaded = source.loadSegment(month, knownCategories);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not load expenses for " + month, e);
+                }
+                
+                lock.writeLock().lock();
+                try {
+                    SegmentSummary segment = unloadedSegments.remove(month);
+                    if (segment == null) {
+                        // Replaced by setExpenses or clear while reading
+                        continue;
+                    }
+                    unfold(segment);
+                    for (Expense expense : loaded) {
+                        if (expenses.putIfAbsent(expense.getId(), expense) == null) {
+                            index(expense);
+                        }
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+    }
+    
+    // Index maintenance (callers hold the write lock)
+    private void reset() {
+        // Every stored month, loaded or not, has to be rewritten
+        changedMonths.addAll(monthTotals.keySet());
+        expenses = new LinkedHashMap<>();
+        expensesByDate = new TreeMap<>();
+        categoryTotals = new HashMap<>();
+        monthTotals = new HashMap<>();
+        duplicates = new DuplicateIndex();
+        searchIndex = null;
+        if (columnar) {
+            columns = new ColumnarExpenseStore(categories);
+        }
+        totalAmount = 0;
+        unloadedSegments.clear();
+        unloadedCount = 0;
+    }
+    
+    private Expense putExpense(Expense expense) {
+        Expense previous = expenses.put(expense.getId(), expense);
+        if (previous != null) {
+            unindex(previous);
+            changedMonths.add(YearMonth.from(previous.getDate()));
+        }
+        index(expense);
+        changedMonths.add(YearMonth.from(expense.getDate()));
+        return previous;
+    }
+    
+    /**
+     * Batch form of putExpense: running totals are summed per category and
+     * month first and applied once per key, and consecutive expenses on the
+     * same date share one date-index lookup
+     */
+    private void putExpenses(Collection<Expense> batch) {
+        Map<String, RunningTotal> batchCategoryTotals = new HashMap<>();
+        Map<YearMonth, RunningTotal> batchMonthTotals = new HashMap<>();
+        LocalDate lastDate = null;
+        Map<String, Expense> bucket = null;
+        RunningTotal monthTotal = null;
+        
+        for (Expense expense : batch) {
+            Expense previous = expenses.put(expense.getId(), expense);
+            if (previous != null) {
+                // Rare: bring the totals up to date before taking the old values out
+                applyTotals(batchCategoryTotals, batchMonthTotals);
+                unindex(previous);
+                changedMonths.add(YearMonth.from(previous.getDate()));
+                lastDate = null;
+            }
+            
+            LocalDate date = expense.getDate();
+            if (!date.equals(lastDate)) {
+                lastDate = date;
+                bucket = expensesByDate.computeIfAbsent(date, key -> new LinkedHashMap<>());
+                monthTotal = batchMonthTotals.computeIfAbsent(YearMonth.from(date), month -> new RunningTotal());
+            }
+            bucket.put(expense.getId(), expense);
+            duplicates.add(expense);
+            if (searchIndex != null) {
+                searchIndex.add(expense);
+            }
+            if (columns != null) {
+                columns.add(expense);
+            }
+            
+            double amount = expense.getAmount();
+            totalAmount += amount;
+            monthTotal.add(amount);
+            batchCategoryTotals.computeIfAbsent(expense.getCategory().getId(), id -> new RunningTotal()).add(amount);
+        }
+        applyTotals(batchCategoryTotals, batchMonthTotals);
+    }
+    
+    private void applyTotals(Map<String, RunningTotal> batchCategoryTotals,
+                             Map<YearMonth, RunningTotal> batchMonthTotals) {
+        batchCategoryTotals.forEach((id, total) ->
+                categoryTotals.computeIfAbsent(id, key -> new RunningTotal()).add(total.sum, total.count));
+        batchMonthTotals.forEach((month, total) -> {
+            monthTotals.computeIfAbsent(month, key -> new RunningTotal()).add(total.sum, total.count);
+            changedMonths.add(month);
+        });
+        batchCategoryTotals.clear();
+        batchMonthTotals.clear();
+    }
+    
+    private void index(Expense expense) {
+        expensesByDate.computeIfAbsent(expense.getDate(), date -> new LinkedHashMap<>())
+                .put(expense.getId(), expense);
+        duplicates.add(expense);
+        if (searchIndex != null) {
+            searchIndex.add(expense);
+        }
+        if (columns != null) {
+            columns.add(expense);
+        }
+        
+        double amount = expense.getAmount();
+        totalAmount += amount;
+        categoryTotals.computeIfAbsent(expense.getCategory().getId(), id -> new RunningTotal()).add(amount);
+        monthTotals.computeIfAbsent(YearMonth.from(expense.getDate()), month -> new RunningTotal()).add(amount);
+    }
+    
+    private void unindex(Expense expense) {
+        Map<String, Expense> bucket = expensesByDate.get(expense.getDate());
+        if (bucket != null) {
+            bucket.remove(expense.getId());
+            if (bucket.isEmpty()) {
+                expensesByDate.remove(expense.getDate());
+            }
+        }
+        duplicates.remove(expense);
+        if (searchIndex != null) {
+            searchIndex.remove(expense);
+        }
+        if (columns != null) {
+            columns.remove(expense.getId());
+        }
+        
+        double amount = expense.getAmount();
+        // Reset rather than subtract to zero so no rounding residue is left behind
+        totalAmount = isEmpty() ? 0 : totalAmount - amount;
+        subtract(categoryTotals, expense.getCategory().getId(), amount, 1);
+        subtract(monthTotals, YearMonth.from(expense.getDate()), amount, 1);
+    }
+    
+    // Adds a stored month's manifest totals in place of its rows
+    private void fold(SegmentSummary segment) {
+        totalAmount += segment.getTotal();
+        unloadedCount += segment.getCount();
+        monthTotals.computeIfAbsent(segment.getMonth(), month -> new RunningTotal())
+                .add(segment.getTotal(), segment.getCount());
+        segment.getCategoryTotals().forEach((id, sum) ->
+                categoryTotals.computeIfAbsent(id, key -> new RunningTotal())
+                        .add(sum, segment.getCategoryCounts().getOrDefault(id, 0)));
+    }
+    
+    private void unfold(SegmentSummary segment) {
+        unloadedCount -= segment.getCount();
+        totalAmount = isEmpty() ? 0 : totalAmount - segment.getTotal();
+        subtract(monthTotals, segment.getMonth(), segment.getTotal(), segment.getCount());
+        segment.getCategoryTotals().forEach((id, sum) ->
+                subtract(categoryTotals, id, sum, segment.getCategoryCounts().getOrDefault(id, 0)));
+    }
+    
+    private boolean isEmpty() {
+        return expenses.isEmpty() && unloadedSegments.isEmpty();
+    }
+    
+    private static double sumOf(RunningTotal total) {
+        return total != null ? total.sum : 0;
+    }
+    
+    private static <K> void subtract(Map<K, RunningTotal> totals, K key, double amount, int rows) {
+        RunningTotal total = totals.get(key);
+        if (total != null && total.remove(amount, rows) <= 0) {
+            totals.remove(key);
+        }
+    }
+    
+    /**
+     * Sum and row count for one aggregation bucket
+     */
+    private static class RunningTotal {
+        private double sum;
+        private int count;
+        
+        void add(double amount) {
+            add(amount, 1);
+        }
+        
+        void add(double amount, int rows) {
+            sum += amount;
+            count += rows;
+        }
+        
+        int remove(double amount, int rows) {
+            sum -= amount;
+            count -= rows;
+            return count;
+        }
     }
 }
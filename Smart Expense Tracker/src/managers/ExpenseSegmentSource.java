@@ -0,0 +1,24 @@
+package managers;
+
+import java.io.IOException;
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.List;
+import models.Category;
+import models.Expense;
+
+/**
+ * Storage that keeps expenses in one segment per month and can read each
+ * segment on its own. ExpenseManager uses it to load older months lazily.
+ */
+public interface ExpenseSegmentSource {
+    /**
+     * Summaries of every stored month
+     */
+    List<SegmentSummary> getSegments() throws IOException;
+    
+    /**
+     * Reads one month, resolving category ids to the given instances
+     */
+    List<Expense> loadSegment(YearMonth month, Collection<Category> categories) throws IOException;
+}
@@ -0,0 +1,78 @@
+package managers;
+
+import java.util.*;
+import models.Expense;
+
+/**
+ * Immutable point-in-time view of the expenses held by an ExpenseManager.
+ *
+ * The manager hands out the same snapshot until its data changes, so callers
+ * can ask for one on every refresh without copying the whole list each time.
+ */
+public final class ExpenseSnapshot implements Iterable<Expense> {
+    private static final Comparator<Expense> NEWEST_FIRST =
+            (e1, e2) -> e2.getDate().compareTo(e1.getDate());
+
+    private final long version;
+    private final Expense[] expenses;
+    private final List<Expense> view;
+    private volatile List<Expense> sortedByDate;
+
+    ExpenseSnapshot(long version, Collection<Expense> expenses) {
+        this.version = version;
+        this.expenses = expenses.toArray(new Expense[0]);
+        this.view = Collections.unmodifiableList(Arrays.asList(this.expenses));
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return expenses.length;
+    }
+
+    public boolean isEmpty() {
+        return expenses.length == 0;
+    }
+
+    public Expense get(int index) {
+        return expenses[index];
+    }
+
+    /**
+     * Read-only list view in insertion order
+     */
+    public List<Expense> asList() {
+        return view;
+    }
+
+    /**
+     * Read-only list sorted newest first; sorted once and then reused.
+     * ExpenseManager.getSortedByDate() fills this in without sorting.
+     */
+    public List<Expense> sortedByDate() {
+        List<Expense> sorted = sortedByDate;
+        if (sorted == null) {
+            Expense[] copy = expenses.clone();
+            Arrays.sort(copy, NEWEST_FIRST);
+            sorted = Collections.unmodifiableList(Arrays.asList(copy));
+            sortedByDate = sorted;
+        }
+        return sorted;
+    }
+
+    boolean hasSortedByDate() {
+        return sortedByDate != null;
+    }
+
+    // Set by the manager from its date index, which is already in this order
+    void setSortedByDate(Expense[] sorted) {
+        sortedByDate = Collections.unmodifiableList(Arrays.asList(sorted));
+    }
+
+    @Override
+    public Iterator<Expense> iterator() {
+        return view.iterator();
+    }
+}
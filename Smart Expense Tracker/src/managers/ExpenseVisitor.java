@@ -0,0 +1,24 @@
+package managers;
+
+import models.Expense;
+
+/**
+ * Walks expenses inside an ExpenseManager without copying them out.
+ *
+ * Called while the manager holds its read lock, so edits wait until the walk
+ * ends; visitors must not call back into the manager's mutating methods.
+ *
+ * @param <E> checked exception the visitor may throw, such as IOException
+ */
+public interface ExpenseVisitor<E extends Exception> {
+    /**
+     * Called once before the first visit with the number of expenses to come
+     */
+    default void begin(int total) throws E {
+    }
+
+    /**
+     * @return false to stop the walk
+     */
+    boolean visit(Expense expense) throws E;
+}
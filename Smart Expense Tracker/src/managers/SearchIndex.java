@@ -0,0 +1,422 @@
+package managers;
+
+import java.time.LocalDate;
+import java.util.*;
+import models.Expense;
+
+/**
+ * Inverted index over the words in expense descriptions and notes.
+ *
+ * Every indexed expense gets a document number in the order it was added;
+ * each word maps to the ascending list of documents containing it, and a
+ * sorted copy of the word table answers prefix queries. Removal only clears
+ * the document slot, and the index renumbers itself once cleared slots
+ * outnumber live ones. Kept up to date by ExpenseManager under its lock.
+ */
+final class SearchIndex {
+    private static final int MIN_COMPACT_DOCUMENTS = 4096;
+    // A prefix with this many times more postings than there are candidates
+    // is checked against the candidates' text instead of being marked in a bit set
+    private static final int VERIFY_RATIO = 16;
+
+    // Open-addressed word table, probed with the text's own characters so a
+    // word already seen costs no String; sorted holds the same lists for prefixes
+    private Postings[] table = new Postings[1024];
+    private int wordCount;
+    private final NavigableMap<String, Postings> sorted = new TreeMap<>();
+
+    private final Map<Expense, Integer> documents = new IdentityHashMap<>();
+    private Expense[] expenses = new Expense[1024];
+    private int[] days = new int[1024];
+    private int documentCount;
+
+    void add(Expense expense) {
+        if (documentCount == expenses.length) {
+            int capacity = documentCount + (documentCount >> 1);
+            expenses = Arrays.copyOf(expenses, capacity);
+            days = Arrays.copyOf(days, capacity);
+        }
+        int document = documentCount++;
+        expenses[document] = expense;
+        days[document] = (int) expense.getDate().toEpochDay();
+        documents.put(expense, document);
+        addWords(expense.getDescription(), document);
+        addWords(expense.getNotes(), document);
+    }
+
+    void remove(Expense expense) {
+        Integer document = documents.remove(expense);
+        if (document == null) {
+            return;
+        }
+        expenses[document] = null;
+        // Posting lists keep the number until the next compaction; queries skip empty slots
+        if (documentCount >= MIN_COMPACT_DOCUMENTS && documents.size() < documentCount / 2) {
+            compact();
+        }
+    }
+
+    // Renumbers the live documents in their original order and rebuilds the lists
+    private void compact() {
+        Expense[] live = new Expense[documents.size()];
+        int count = 0;
+        for (int i = 0; i < documentCount; i++) {
+            if (expenses[i] != null) {
+                live[count++] = expenses[i];
+            }
+        }
+        table = new Postings[1024];
+        wordCount = 0;
+        sorted.clear();
+        documents.clear();
+        expenses = new Expense[Math.max(live.length, 1024)];
+        days = new int[expenses.length];
+        documentCount = 0;
+        for (Expense expense : live) {
+            add(expense);
+        }
+    }
+
+    // Word table
+    private void addWords(String text, int document) {
+        if (text == null) {
+            return;
+        }
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && !isWordChar(text.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            int hash = 0;
+            while (i < length && isWordChar(text.charAt(i))) {
+                hash = 31 * hash + lower(text.charAt(i));
+                i++;
+            }
+            if (i > start) {
+                postingsFor(text, start, i, hash).add(document);
+            }
+        }
+    }
+
+    // Finds or creates the list for the lower-cased word text[start, end)
+    private Postings postingsFor(String text, int start, int end, int hash) {
+        int mask = table.length - 1;
+        int slot = spread(hash) & mask;
+        Postings list;
+        while ((list = table[slot]) != null) {
+            if (list.hash == hash && list.matches(text, start, end)) {
+                return list;
+            }
+            slot = (slot + 1) & mask;
+        }
+        char[] word = new char[end - start];
+        for (int j = start; j < end; j++) {
+            word[j - start] = lower(text.charAt(j));
+        }
+        list = new Postings(new String(word), hash);
+        table[slot] = list;
+        sorted.put(list.word, list);
+        if (++wordCount > table.length / 2) {
+            resizeTable();
+        }
+        return list;
+    }
+
+    private void resizeTable() {
+        Postings[] old = table;
+        table = new Postings[old.length * 2];
+        int mask = table.length - 1;
+        for (Postings list : old) {
+            if (list != null) {
+                int slot = spread(list.hash) & mask;
+                while (table[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = list;
+            }
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ hash >>> 16;
+    }
+
+    // Search
+    /**
+     * Expenses where every query word starts some word of the description
+     * or notes, newest first. Null or blank queries are not handled here.
+     *
+     * @param from earliest date, or null
+     * @param to latest date, or null
+     * @param categoryIds allowed category ids, or null for any
+     */
+    List<Expense> search(String query, LocalDate from, LocalDate to, Set<String> categoryIds) {
+        List<String> prefixes = words(query);
+        if (prefixes.isEmpty()) {
+            return List.of();
+        }
+
+        // Rarest prefix first: it supplies the candidates, the others only narrow them down
+        List<Collection<Postings>> lists = new ArrayList<>();
+        long[] counts = new long[prefixes.size()];
+        for (int i = 0; i < prefixes.size(); i++) {
+            String prefix = prefixes.get(i);
+            Collection<Postings> matching = sorted.subMap(prefix, prefix + Character.MAX_VALUE).values();
+            lists.add(matching);
+            for (Postings list : matching) {
+                counts[i] += list.size;
+            }
+        }
+        Integer[] order = new Integer[prefixes.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> counts[i]));
+        if (counts[order[0]] == 0) {
+            return List.of();
+        }
+
+        int[] candidates = candidates(lists.get(order[0]));
+        int candidateCount = candidates.length;
+        List<String> verify = new ArrayList<>();
+        for (int k = 1; k < order.length; k++) {
+            int i = order[k];
+            if (counts[i] > (long) candidateCount * VERIFY_RATIO) {
+                verify.add(prefixes.get(i));
+                continue;
+            }
+            long[] bits = bitSet(lists.get(i));
+            int kept = 0;
+            for (int c = 0; c < candidateCount; c++) {
+                int document = candidates[c];
+                if ((bits[document >>> 6] & 1L << document) != 0) {
+                    candidates[kept++] = document;
+                }
+            }
+            candidateCount = kept;
+        }
+
+        long fromDay = from != null ? from.toEpochDay() : Long.MIN_VALUE;
+        long toDay = to != null ? to.toEpochDay() : Long.MAX_VALUE;
+        int matches = 0;
+        for (int c = 0; c < candidateCount; c++) {
+            int document = candidates[c];
+            int day = days[document];
+            if (day < fromDay || day > toDay) {
+                continue;
+            }
+            Expense expense = expenses[document];
+            if (expense == null
+                    || categoryIds != null && !categoryIds.contains(expense.getCategory().getId())
+                    || !verify.isEmpty() && !containsAll(expense, verify)) {
+                continue;
+            }
+            candidates[matches++] = document;
+        }
+        return newestFirst(candidates, matches);
+    }
+
+    // Ascending, distinct document numbers from the lists
+    private int[] candidates(Collection<Postings> lists) {
+        if (lists.size() == 1) {
+            Postings list = lists.iterator().next();
+            return Arrays.copyOf(list.documents, list.size);
+        }
+        // One document can hold several of the words; the bit set merges them
+        long[] bits = bitSet(lists);
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        int[] documents = new int[count];
+        int next = 0;
+        for (int i = 0; i < bits.length; i++) {
+            long word = bits[i];
+            while (word != 0) {
+                documents[next++] = i << 6 | Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return documents;
+    }
+
+    private long[] bitSet(Collection<Postings> lists) {
+        long[] bits = new long[(documentCount + 63) >>> 6];
+        for (Postings list : lists) {
+            int[] listDocuments = list.documents;
+            for (int i = 0; i < list.size; i++) {
+                int document = listDocuments[i];
+                bits[document >>> 6] |= 1L << document;
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Orders ascending document numbers newest first. Dates span few enough
+     * days that a counting sort beats comparing, and it keeps document
+     * order within a day.
+     */
+    private List<Expense> newestFirst(int[] documents, int count) {
+        Expense[] result = new Expense[count];
+        if (count == 0) {
+            return List.of();
+        }
+        int minDay = Integer.MAX_VALUE;
+        int maxDay = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            int day = days[documents[i]];
+            minDay = Math.min(minDay, day);
+            maxDay = Math.max(maxDay, day);
+        }
+        long span = (long) maxDay - minDay + 1;
+        if (span > count * 4L + 1024) {
+            // Sparse dates: sort day and document packed into one long instead
+            long[] keys = new long[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = -(long) days[documents[i]] << 32 | documents[i];
+            }
+            Arrays.sort(keys);
+            for (int i = 0; i < count; i++) {
+                result[i] = expenses[(int) keys[i]];
+            }
+        } else {
+            // Slot 0 is the newest day
+            int[] starts = new int[(int) span + 1];
+            for (int i = 0; i < count; i++) {
+                starts[maxDay - days[documents[i]] + 1]++;
+            }
+            for (int i = 1; i < starts.length; i++) {
+                starts[i] += starts[i - 1];
+            }
+            for (int i = 0; i < count; i++) {
+                int document = documents[i];
+                result[starts[maxDay - days[document]]++] = expenses[document];
+            }
+        }
+        return Collections.unmodifiableList(Arrays.asList(result));
+    }
+
+    private static boolean containsAll(Expense expense, List<String> prefixes) {
+        for (String prefix : prefixes) {
+            if (!hasWordStartingWith(expense.getDescription(), prefix)
+                    && !hasWordStartingWith(expense.getNotes(), prefix)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Same word boundaries as the index, without splitting the text up
+    private static boolean hasWordStartingWith(String text, String prefix) {
+        if (text == null) {
+            return false;
+        }
+        int length = text.length();
+        boolean wordStart = true;
+        for (int i = 0; i < length; i++) {
+            boolean letter = isWordChar(text.charAt(i));
+            if (letter && wordStart && startsWithIgnoringCase(text, i, prefix)) {
+                return true;
+            }
+            wordStart = !letter;
+        }
+        return false;
+    }
+
+    private static boolean startsWithIgnoringCase(String text, int offset, String prefix) {
+        if (offset + prefix.length() > text.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            char c = text.charAt(offset + i);
+            if (!isWordChar(c) || lower(c) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Letters and digits make up words; ASCII is answered without the Unicode tables
+    private static boolean isWordChar(char c) {
+        if (c < 0x80) {
+            return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9';
+        }
+        return Character.isLetterOrDigit(c);
+    }
+
+    private static char lower(char c) {
+        if (c < 0x80) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+        }
+        return Character.toLowerCase(c);
+    }
+
+    /**
+     * Distinct lower-case words of the text, in order, split the way the
+     * index splits descriptions and notes
+     */
+    static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && !isWordChar(text.charAt(i))) {
+                i++;
+            }
+            StringBuilder word = new StringBuilder();
+            while (i < length && isWordChar(text.charAt(i))) {
+                word.append(lower(text.charAt(i)));
+                i++;
+            }
+            if (word.length() > 0 && !words.contains(word.toString())) {
+                words.add(word.toString());
+            }
+        }
+        return words;
+    }
+
+    /**
+     * One word and the ascending document numbers containing it; documents
+     * are added in order, so appending keeps the list sorted
+     */
+    private static class Postings {
+        private final String word;
+        private final int hash;
+        private int[] documents = new int[2];
+        private int size;
+
+        Postings(String word, int hash) {
+            this.word = word;
+            this.hash = hash;
+        }
+
+        boolean matches(String text, int start, int end) {
+            if (word.length() != end - start) {
+                return false;
+            }
+            for (int i = start; i < end; i++) {
+                if (lower(text.charAt(i)) != word.charAt(i - start)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void add(int document) {
+            if (size > 0 && documents[size - 1] == document) {
+                // The word appeared earlier in the same expense
+                return;
+            }
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size * 2);
+            }
+            documents[size++] = document;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package managers;
+
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import models.Expense;
+
+/**
+ * Row count and totals for one month of stored expenses, kept in the
+ * segment manifest so totals are known without reading the segment itself
+ */
+public final class SegmentSummary {
+    private final YearMonth month;
+    private final int count;
+    private final double total;
+    // Keyed by category id
+    private final Map<String, Double> categoryTotals;
+    private final Map<String, Integer> categoryCounts;
+    
+    public SegmentSummary(YearMonth month, int count, double total,
+                          Map<String, Double> categoryTotals, Map<String, Integer> categoryCounts) {
+        this.month = month;
+        this.count = count;
+        this.total = total;
+        this.categoryTotals = Collections.unmodifiableMap(new HashMap<>(categoryTotals));
+        this.categoryCounts = Collections.unmodifiableMap(new HashMap<>(categoryCounts));
+    }
+    
+    /**
+     * Summarizes the expenses of one month
+     */
+    public static SegmentSummary of(YearMonth month, Collection<Expense> expenses) {
+        double total = 0;
+        Map<String, Double> categoryTotals = new HashMap<>();
+        Map<String, Integer> categoryCounts = new HashMap<>();
+        for (Expense expense : expenses) {
+            String categoryId = expense.getCategory().getId();
+            total += expense.getAmount();
+            categoryTotals.merge(categoryId, expense.getAmount(), Double::sum);
+            categoryCounts.merge(categoryId, 1, Integer::sum);
+        }
+        return new SegmentSummary(month, expenses.size(), total, categoryTotals, categoryCounts);
+    }
+    
+    public YearMonth getMonth() {
+        return month;
+    }
+    
+    public int getCount() {
+        return count;
+    }
+    
+    public double getTotal() {
+        return total;
+    }
+    
+    public Map<String, Double> getCategoryTotals() {
+        return categoryTotals;
+    }
+    
+    public Map<String, Integer> getCategoryCounts() {
+        return categoryCounts;
+    }
+}
@@ -2,6 +2,7 @@ package models;
 
 import java.awt.Color;
 import java.io.Serializable;
+import java.util.Objects;
 
 /**
  * Represents an expense category
@@ -54,6 +55,19 @@ public class Category implements Serializable {
         this.icon = icon;
     }
     
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Category category = (Category) o;
+        return Objects.equals(id, category.id);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hash(id);
+    }
+    
     @Override
     public String toString() {
         return name;
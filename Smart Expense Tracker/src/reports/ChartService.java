@@ -0,0 +1,224 @@
+package reports;
+
+import models.Category;
+import org.jfree.chart.ChartPanel;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.axis.Axis;
+import org.jfree.chart.plot.CategoryPlot;
+import org.jfree.chart.plot.PiePlot;
+import org.jfree.chart.title.LegendTitle;
+import org.jfree.data.category.DefaultCategoryDataset;
+import org.jfree.data.general.DefaultPieDataset;
+
+import java.awt.*;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Keeps one live chart per chart type and updates it in place.
+ *
+ * Charts are created the first time they are shown and then reused; new
+ * totals only change the dataset values that differ, so the chart
+ * repaints once and keeps its panel. The bar and trend charts share one
+ * dataset. Use from the EDT only.
+ */
+public class ChartService {
+    public enum ChartType {
+        CATEGORY_PIE,
+        MONTHLY_BAR,
+        TREND_LINE
+    }
+    
+    private static final String SERIES = "Expenses";
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("MMM yyyy");
+    
+    private final DefaultPieDataset<String> categoryDataset = new DefaultPieDataset<>();
+    // Bar and trend charts plot the same months
+    private final DefaultCategoryDataset monthDataset = new DefaultCategoryDataset();
+    private final Map<String, Color> sectionColors = new LinkedHashMap<>();
+    
+    private final Map<ChartType, ChartPanel> panels = new EnumMap<>(ChartType.class);
+    // Puts back each chart's original light colours after dark mode
+    private final Map<ChartType, Runnable> lightThemes = new EnumMap<>(ChartType.class);
+    private boolean darkMode;
+    
+    /**
+     * The chart's panel, created on first use and the same object afterwards
+     */
+    public ChartPanel getChartPanel(ChartType type) {
+        ChartPanel panel = panels.get(type);
+        if (panel == null) {
+            JFreeChart chart;
+            switch (type) {
+                case CATEGORY_PIE:
+                    chart = ReportGenerator.createPieChart(categoryDataset);
+                    PiePlot<?> plot = (PiePlot<?>) chart.getPlot();
+                    sectionColors.forEach(plot::setSectionPaint);
+                    break;
+                case MONTHLY_BAR:
+                    chart = ReportGenerator.createBarChart(monthDataset);
+                    break;
+                default:
+                    chart = ReportGenerator.createLineChart(monthDataset);
+                    break;
+            }
+            lightThemes.put(type, captureTheme(chart));
+            if (darkMode) {
+                ReportGenerator.applyDarkModeToChart(chart);
+            }
+            panel = new ChartPanel(chart);
+            panel.setPreferredSize(new Dimension(type == ChartType.CATEGORY_PIE ? 500 : 600, 400));
+            panels.put(type, panel);
+        }
+        return panel;
+    }
+    
+    /**
+     * Brings the pie chart up to date, touching only categories whose totals changed
+     */
+    public void setCategoryTotals(Map<Category, Double> totals) {
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (Map.Entry<Category, Double> entry : totals.entrySet()) {
+            String name = entry.getKey().getName();
+            values.put(name, entry.getValue());
+            Color color = entry.getKey().getColor();
+            if (!color.equals(sectionColors.put(name, color))) {
+                ChartPanel pie = panels.get(ChartType.CATEGORY_PIE);
+                if (pie != null) {
+                    ((PiePlot<?>) pie.getChart().getPlot()).setSectionPaint(name, color);
+                }
+            }
+        }
+    
+        // One change event for the whole update instead of one per value
+        categoryDataset.setNotify(false);
+        try {
+            for (String name : new ArrayList<>(categoryDataset.getKeys())) {
+                if (!values.containsKey(name)) {
+                    categoryDataset.remove(name);
+                }
+            }
+            values.forEach((name, value) -> {
+                if (categoryDataset.getIndex(name) < 0 || !value.equals(categoryDataset.getValue(name))) {
+                    categoryDataset.setValue(name, value);
+                }
+            });
+        } finally {
+            categoryDataset.setNotify(true);
+        }
+    }
+    
+    /**
+     * Brings the bar and trend charts up to date. Months that slid out of the
+     * window are dropped and new ones appended; other columns keep their place.
+     */
+    public void setMonthTotals(Map<YearMonth, Double> totals) {
+        List<String> months = new ArrayList<>();
+        for (YearMonth month : totals.keySet()) {
+            months.add(month.format(MONTH_FORMAT));
+        }
+    
+        monthDataset.setNotify(false);
+        try {
+            for (Object column : monthDataset.getColumnKeys().toArray()) {
+                if (!months.contains(column)) {
+                    monthDataset.removeColumn((Comparable<?>) column);
+                }
+            }
+            // Columns keep insertion order, so the survivors must come first in the new window
+            List<?> kept = monthDataset.getColumnKeys();
+            if (!kept.equals(months.subList(0, kept.size()))) {
+                monthDataset.clear();
+            }
+            int i = 0;
+            for (Double value : totals.values()) {
+                String month = months.get(i++);
+                if (!Objects.equals(monthDataset.getColumnIndex(month) < 0 ? null : monthDataset.getValue(SERIES, month), value)) {
+                    monthDataset.setValue(value, SERIES, month);
+                }
+            }
+        } finally {
+            monthDataset.setNotify(true);
+        }
+    }
+    
+    /**
+     * Restyles the existing charts; nothing is rebuilt
+     */
+    public void setDarkMode(boolean darkMode) {
+        if (this.darkMode == darkMode) {
+            return;
+        }
+        this.darkMode = darkMode;
+        for (Map.Entry<ChartType, ChartPanel> entry : panels.entrySet()) {
+            if (darkMode) {
+                ReportGenerator.applyDarkModeToChart(entry.getValue().getChart());
+            } else {
+                lightThemes.get(entry.getKey()).run();
+            }
+        }
+    }
+    
+    // Records every paint that applyDarkModeToChart changes, to set them back later
+    private static Runnable captureTheme(JFreeChart chart) {
+        List<Runnable> restore = new ArrayList<>();
+        Paint background = chart.getBackgroundPaint();
+        Paint title = chart.getTitle().getPaint();
+        restore.add(() -> chart.setBackgroundPaint(background));
+        restore.add(() -> chart.getTitle().setPaint(title));
+    
+        if (chart.getPlot() instanceof PiePlot) {
+            PiePlot<?> plot = (PiePlot<?>) chart.getPlot();
+            Paint plotBackground = plot.getBackgroundPaint();
+            Paint outline = plot.getOutlinePaint();
+            Paint labelBackground = plot.getLabelBackgroundPaint();
+            Paint label = plot.getLabelPaint();
+            restore.add(() -> {
+                plot.setBackgroundPaint(plotBackground);
+                plot.setOutlinePaint(outline);
+                plot.setLabelBackgroundPaint(labelBackground);
+                plot.setLabelPaint(label);
+            });
+        } else if (chart.getPlot() instanceof CategoryPlot) {
+            CategoryPlot plot = (CategoryPlot) chart.getPlot();
+            Paint plotBackground = plot.getBackgroundPaint();
+            Paint outline = plot.getOutlinePaint();
+            Paint rangeGrid = plot.getRangeGridlinePaint();
+            Paint domainGrid = plot.getDomainGridlinePaint();
+            restore.add(() -> {
+                plot.setBackgroundPaint(plotBackground);
+                plot.setOutlinePaint(outline);
+                plot.setRangeGridlinePaint(rangeGrid);
+                plot.setDomainGridlinePaint(domainGrid);
+            });
+            restore.add(captureAxis(plot.getDomainAxis()));
+            restore.add(captureAxis(plot.getRangeAxis()));
+        }
+    
+        LegendTitle legend = chart.getLegend();
+        if (legend != null) {
+            Paint legendBackground = legend.getBackgroundPaint();
+            Paint item = legend.getItemPaint();
+            restore.add(() -> {
+                legend.setBackgroundPaint(legendBackground);
+                legend.setItemPaint(item);
+            });
+        }
+        return () -> restore.forEach(Runnable::run);
+    }
+    
+    private static Runnable captureAxis(Axis axis) {
+        Paint label = axis.getLabelPaint();
+        Paint tickLabel = axis.getTickLabelPaint();
+        return () -> {
+            axis.setLabelPaint(label);
+            axis.setTickLabelPaint(tickLabel);
+        };
+    }
+}
@@ -1,5 +1,6 @@
 package reports;
 
+import managers.ExpenseAggregates;
 import models.Expense;
 import models.Category;
 import org.jfree.chart.ChartFactory;
@@ -33,13 +34,7 @@ public class ReportGenerator {
             dataset.setValue(entry.getKey().getName(), entry.getValue());
         }
         
-        JFreeChart chart = ChartFactory.createPieChart(
-                "Expenses by Category",
-                dataset,
-                true,
-                true,
-                false
-        );
+        JFreeChart chart = createPieChart(dataset);
         
         // Apply dark mode if enabled
         if (isDarkMode) {
@@ -47,7 +42,7 @@ public class ReportGenerator {
         }
         
         // Customize colors based on categories
-        PiePlot plot = (PiePlot) chart.getPlot();
+        PiePlot<?> plot = (PiePlot<?>) chart.getPlot();
         for (Map.Entry<Category, Double> entry : categoryExpenses.entrySet()) {
             plot.setSectionPaint(entry.getKey().getName(), entry.getKey().getColor());
         }
@@ -69,25 +64,13 @@ public class ReportGenerator {
             dataset.addValue(entry.getValue(), "Expenses", entry.getKey().format(formatter));
         }
         
-        JFreeChart chart = ChartFactory.createBarChart(
-                "Monthly Expenses",
-                "Month",
-                "Amount ($)",
-                dataset,
-                PlotOrientation.VERTICAL,
-                true,
-                true,
-                false
-        );
+        JFreeChart chart = createBarChart(dataset);
         
         // Apply dark mode if enabled
         if (isDarkMode) {
             applyDarkModeToChart(chart);
         }
         
-        CategoryPlot plot = chart.getCategoryPlot();
-        plot.getRenderer().setSeriesPaint(0, new Color(65, 105, 225));
-        
         ChartPanel chartPanel = new ChartPanel(chart);
         chartPanel.setPreferredSize(new Dimension(600, 400));
         
@@ -105,43 +88,72 @@ public class ReportGenerator {
             dataset.addValue(entry.getValue(), "Expenses", entry.getKey().format(formatter));
         }
         
-        JFreeChart chart = ChartFactory.createLineChart(
-                "Expense Trends",
-                "Month",
-                "Amount ($)",
-                dataset,
-                PlotOrientation.VERTICAL,
-                true,
-                true,
-                false
-        );
+        JFreeChart chart = createLineChart(dataset);
         
         // Apply dark mode if enabled
         if (isDarkMode) {
             applyDarkModeToChart(chart);
         }
         
-        CategoryPlot plot = chart.getCategoryPlot();
-        plot.getRenderer().setSeriesPaint(0, new Color(60, 179, 113));
-        
         ChartPanel chartPanel = new ChartPanel(chart);
         chartPanel.setPreferredSize(new Dimension(600, 400));
         
         return chartPanel;
     }
     
+    // Chart construction shared with ChartService
+    static JFreeChart createPieChart(DefaultPieDataset<String> dataset) {
+        return ChartFactory.createPieChart(
+                "Expenses by Category",
+                dataset,
+                true,
+                true,
+                false
+        );
+    }
+    
+    static JFreeChart createBarChart(DefaultCategoryDataset dataset) {
+        JFreeChart chart = ChartFactory.createBarChart(
+                "Monthly Expenses",
+                "Month",
+                "Amount ($)",
+                dataset,
+                PlotOrientation.VERTICAL,
+                true,
+                true,
+                false
+        );
+        chart.getCategoryPlot().getRenderer().setSeriesPaint(0, new Color(65, 105, 225));
+        return chart;
+    }
+    
+    static JFreeChart createLineChart(DefaultCategoryDataset dataset) {
+        JFreeChart chart = ChartFactory.createLineChart(
+                "Expense Trends",
+                "Month",
+                "Amount ($)",
+                dataset,
+                PlotOrientation.VERTICAL,
+                true,
+                true,
+                false
+        );
+        chart.getCategoryPlot().getRenderer().setSeriesPaint(0, new Color(60, 179, 113));
+        return chart;
+    }
+    
     /**
      * Applies dark mode styling to chart
      */
-    private static void applyDarkModeToChart(JFreeChart chart) {
+    static void applyDarkModeToChart(JFreeChart chart) {
         Color darkBackground = new Color(45, 45, 45);
         Color darkForeground = new Color(220, 220, 220);
         
         chart.setBackgroundPaint(darkBackground);
         chart.getTitle().setPaint(darkForeground);
         
-        if (chart.getPlot() instanceof PiePlot) {
-            PiePlot plot = (PiePlot) chart.getPlot();
+        if (chart.getPlot() instanceof PiePlot<?>) {
+            PiePlot<?> plot = (PiePlot<?>) chart.getPlot();
             plot.setBackgroundPaint(darkBackground);
             plot.setOutlinePaint(darkForeground);
             plot.setLabelBackgroundPaint(darkBackground);
@@ -168,13 +180,24 @@ public class ReportGenerator {
      * Generates a summary report
      */
     public static String generateSummaryReport(List<Expense> expenses, Map<Category, Double> categoryExpenses) {
+        double total = expenses.stream().mapToDouble(Expense::getAmount).sum();
+        return formatSummaryReport(total, expenses.size(), categoryExpenses);
+    }
+    
+    /**
+     * Generates a summary report from ExpenseManager totals
+     */
+    public static String generateSummaryReport(ExpenseAggregates aggregates) {
+        return formatSummaryReport(aggregates.getTotal(), aggregates.getCount(), aggregates.getCategoryTotals());
+    }
+    
+    private static String formatSummaryReport(double total, int count, Map<Category, Double> categoryExpenses) {
         StringBuilder report = new StringBuilder();
         report.append("EXPENSE SUMMARY REPORT\n");
         report.append("=".repeat(50)).append("\n\n");
         
-        double total = expenses.stream().mapToDouble(Expense::getAmount).sum();
         report.append(String.format("Total Expenses: $%.2f\n", total));
-        report.append(String.format("Number of Transactions: %d\n\n", expenses.size()));
+        report.append(String.format("Number of Transactions: %d\n\n", count));
         
         report.append("Expenses by Category:\n");
         report.append("-".repeat(50)).append("\n");
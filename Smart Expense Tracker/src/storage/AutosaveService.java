@@ -0,0 +1,122 @@
+package storage;
+
+import managers.ExpenseChangeListener;
+import managers.ExpenseChangeEvent;
+
+import java.io.IOException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Debounced background autosave.
+ *
+ * Changes only set a dirty flag; the first change after a save schedules one
+ * snapshot write after the configured interval, so a burst of edits costs a
+ * single write. Writes go through the journal checkpoint, which runs off the
+ * EDT and replaces the data files atomically.
+ */
+public class AutosaveService implements ExpenseChangeListener {
+    public static final long DEFAULT_INTERVAL_MILLIS = 5000;
+
+    private final ExpenseJournal journal;
+    private final long intervalMillis;
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "autosave");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ScheduledFuture<?> pendingSave;
+    private volatile Consumer<IOException> errorHandler = e -> { };
+    // Only touched on the scheduler thread; reports once per run of failures
+    private boolean failing;
+
+    public AutosaveService(ExpenseJournal journal) {
+        this(journal, DEFAULT_INTERVAL_MILLIS);
+    }
+
+    public AutosaveService(ExpenseJournal journal, long intervalMillis) {
+        this.journal = journal;
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * @param errorHandler told when autosaves start failing; called on the autosave thread
+     */
+    public void setErrorHandler(Consumer<IOException> errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    @Override
+    public void expensesChanged(ExpenseChangeEvent event) {
+        markDirty();
+    }
+
+    public void markDirty() {
+        dirty.set(true);
+        schedule();
+    }
+
+    public boolean isDirty() {
+        return dirty.get();
+    }
+
+    private synchronized void schedule() {
+        if (scheduler.isShutdown()) {
+            return;
+        }
+        if (pendingSave == null || pendingSave.isDone()) {
+            pendingSave = scheduler.schedule(this::save, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void save() {
+        // This task is running, so a later schedule() must start a new one
+        synchronized (this) {
+            pendingSave = null;
+        }
+        // Clear first so edits made during the write schedule another save
+        if (!dirty.getAndSet(false)) {
+            return;
+        }
+        try {
+            journal.checkpoint();
+            failing = false;
+        } catch (IOException e) {
+            // Nothing is lost: the journal still holds every change. Try again later.
+            System.err.println("Autosave failed: " + e.getMessage());
+            dirty.set(true);
+            if (!failing) {
+                failing = true;
+                errorHandler.accept(e);
+            }
+        }
+        if (dirty.get()) {
+            schedule();
+        }
+    }
+
+    /**
+     * Stops the service, first writing any changes not yet saved. Returns at
+     * once when everything is already on disk.
+     */
+    public void shutdown() throws IOException {
+        synchronized (this) {
+            if (pendingSave != null) {
+                pendingSave.cancel(false);
+            }
+        }
+        scheduler.shutdown();
+        try {
+            // Wait for a save that is already running, then flush what is left
+            scheduler.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (dirty.getAndSet(false)) {
+            journal.checkpoint();
+        }
+    }
+}
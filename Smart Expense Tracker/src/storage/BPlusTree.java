@@ -0,0 +1,380 @@
+package storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * B+tree of byte-string keys and values stored in PageFile pages.
+ *
+ * Keys compare as unsigned bytes. Leaves are chained left to right for range
+ * scans. Values too large to share a leaf go to a chain of overflow pages.
+ * Deletes do not merge underfull nodes; freed leaf space is reused by later
+ * inserts. Changes reach disk when the PageFile commits.
+ */
+class BPlusTree {
+    static final int MAX_KEY_LENGTH = 512;
+    private static final int MAX_INLINE_VALUE = 1024;
+
+    private static final byte LEAF = 1;
+    private static final byte INTERNAL = 2;
+    private static final byte INLINE = 0;
+    private static final byte OVERFLOW = 1;
+
+    // type, count, next leaf or first child
+    private static final int NODE_HEADER_SIZE = 7;
+    // next page, bytes used
+    private static final int OVERFLOW_HEADER_SIZE = 8;
+
+    private final PageFile pages;
+    // Header offset holding the root page, 0 while the tree is empty
+    private final int rootOffset;
+
+    BPlusTree(PageFile pages, int rootOffset) {
+        this.pages = pages;
+        this.rootOffset = rootOffset;
+    }
+
+    /**
+     * Visits entries in key order until it returns false
+     */
+    interface Visitor {
+        boolean visit(byte[] key, byte[] value) throws IOException;
+    }
+
+    // Queries
+    byte[] get(byte[] key) throws IOException {
+        int root = pages.getHeaderInt(rootOffset);
+        if (root == 0) {
+            return null;
+        }
+        Node node = readNode(root);
+        while (!node.leaf) {
+            node = readNode(node.children.get(childIndex(node, key)));
+        }
+        int index = search(node, key);
+        return index >= 0 ? readValue(node.cells.get(index)) : null;
+    }
+
+    /**
+     * Visits entries with keys at or after from, in key order
+     */
+    void scan(byte[] from, Visitor visitor) throws IOException {
+        int root = pages.getHeaderInt(rootOffset);
+        if (root == 0) {
+            return;
+        }
+        Node node = readNode(root);
+        while (!node.leaf) {
+            node = readNode(node.children.get(childIndex(node, from)));
+        }
+
+        int index = lowerBound(node, from);
+        while (true) {
+            for (; index < node.keys.size(); index++) {
+                if (!visitor.visit(node.keys.get(index), readValue(node.cells.get(index)))) {
+                    return;
+                }
+            }
+            if (node.next == 0) {
+                return;
+            }
+            node = readNode(node.next);
+            index = 0;
+        }
+    }
+
+    // Updates
+    /**
+     * Inserts or replaces the value stored under key
+     */
+    void put(byte[] key, byte[] value) throws IOException {
+        if (key.length > MAX_KEY_LENGTH) {
+            throw new IOException("Key longer than " + MAX_KEY_LENGTH + " bytes");
+        }
+        byte[] cell = writeValue(value);
+
+        int root = pages.getHeaderInt(rootOffset);
+        if (root == 0) {
+            Node leaf = new Node(true);
+            leaf.keys.add(key);
+            leaf.cells.add(cell);
+            int page = pages.allocate();
+            writeNode(page, leaf);
+            pages.setHeaderInt(rootOffset, page);
+            return;
+        }
+
+        Split split = insert(root, key, cell);
+        if (split != null) {
+            // The root split: grow the tree by one level
+            Node newRoot = new Node(false);
+            newRoot.children.add(root);
+            newRoot.keys.add(split.key);
+            newRoot.children.add(split.page);
+            int page = pages.allocate();
+            writeNode(page, newRoot);
+            pages.setHeaderInt(rootOffset, page);
+        }
+    }
+
+    /**
+     * Removes key and its value
+     *
+     * @return whether the key was present
+     */
+    boolean delete(byte[] key) throws IOException {
+        int page = pages.getHeaderInt(rootOffset);
+        if (page == 0) {
+            return false;
+        }
+        Node node = readNode(page);
+        while (!node.leaf) {
+            page = node.children.get(childIndex(node, key));
+            node = readNode(page);
+        }
+        int index = search(node, key);
+        if (index < 0) {
+            return false;
+        }
+        freeValue(node.cells.get(index));
+        node.keys.remove(index);
+        node.cells.remove(index);
+        writeNode(page, node);
+        return true;
+    }
+
+    private Split insert(int page, byte[] key, byte[] cell) throws IOException {
+        Node node = readNode(page);
+        if (node.leaf) {
+            int index = search(node, key);
+            if (index >= 0) {
+                freeValue(node.cells.get(index));
+                node.cells.set(index, cell);
+            } else {
+                index = -index - 1;
+                node.keys.add(index, key);
+                node.cells.add(index, cell);
+            }
+        } else {
+            int index = childIndex(node, key);
+            Split split = insert(node.children.get(index), key, cell);
+            if (split == null) {
+                return null;
+            }
+            node.keys.add(index, split.key);
+            node.children.add(index + 1, split.page);
+        }
+
+        if (node.size() <= PageFile.PAGE_SIZE) {
+            writeNode(page, node);
+            return null;
+        }
+        return split(page, node);
+    }
+
+    private Split split(int page, Node node) throws IOException {
+        int mid = splitPoint(node);
+        Node right = new Node(node.leaf);
+        byte[] separator;
+        int rightPage = pages.allocate();
+
+        if (node.leaf) {
+            right.keys.addAll(node.keys.subList(mid, node.keys.size()));
+            right.cells.addAll(node.cells.subList(mid, node.cells.size()));
+            node.keys.subList(mid, node.keys.size()).clear();
+            node.cells.subList(mid, node.cells.size()).clear();
+            right.next = node.next;
+            node.next = rightPage;
+            separator = right.keys.get(0);
+        } else {
+            // The middle key moves up; its right child starts the new node
+            separator = node.keys.get(mid);
+            right.keys.addAll(node.keys.subList(mid + 1, node.keys.size()));
+            right.children.addAll(node.children.subList(mid + 1, node.children.size()));
+            node.keys.subList(mid, node.keys.size()).clear();
+            node.children.subList(mid + 1, node.children.size()).clear();
+        }
+
+        writeNode(page, node);
+        writeNode(rightPage, right);
+        return new Split(separator, rightPage);
+    }
+
+    // Index of the first entry that brings the left half past half the bytes
+    private static int splitPoint(Node node) {
+        int total = node.size();
+        int used = NODE_HEADER_SIZE;
+        int count = node.keys.size();
+        for (int i = 0; i < count; i++) {
+            used += node.entrySize(i);
+            if (used >= total / 2) {
+                int lastLeft = node.leaf ? count - 1 : count - 2;
+                return Math.max(1, Math.min(i + 1, lastLeft));
+            }
+        }
+        return count / 2;
+    }
+
+    private static int search(Node node, byte[] key) {
+        return Collections.binarySearch(node.keys, key, Arrays::compareUnsigned);
+    }
+
+    // Child to descend into: keys equal to a separator live on its right
+    private static int childIndex(Node node, byte[] key) {
+        int index = search(node, key);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    private static int lowerBound(Node node, byte[] key) {
+        int index = search(node, key);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    // Values
+    private byte[] writeValue(byte[] value) throws IOException {
+        if (value.length <= MAX_INLINE_VALUE) {
+            byte[] cell = new byte[value.length + 1];
+            cell[0] = INLINE;
+            System.arraycopy(value, 0, cell, 1, value.length);
+            return cell;
+        }
+
+        // Write the chain back to front so each page knows its successor
+        int chunk = PageFile.PAGE_SIZE - OVERFLOW_HEADER_SIZE;
+        int next = 0;
+        for (int start = (value.length - 1) / chunk * chunk; start >= 0; start -= chunk) {
+            int length = Math.min(chunk, value.length - start);
+            byte[] data = new byte[PageFile.PAGE_SIZE];
+            ByteBuffer.wrap(data).putInt(next).putInt(length).put(value, start, length);
+            next = pages.allocate();
+            pages.write(next, data);
+        }
+        return ByteBuffer.allocate(9).put(OVERFLOW).putInt(next).putInt(value.length).array();
+    }
+
+    private byte[] readValue(byte[] cell) throws IOException {
+        if (cell[0] == INLINE) {
+            return Arrays.copyOfRange(cell, 1, cell.length);
+        }
+        ByteBuffer ref = ByteBuffer.wrap(cell, 1, 8);
+        int page = ref.getInt();
+        byte[] value = new byte[ref.getInt()];
+        int offset = 0;
+        while (page != 0) {
+            ByteBuffer data = ByteBuffer.wrap(pages.read(page));
+            page = data.getInt();
+            int length = data.getInt();
+            data.get(value, offset, length);
+            offset += length;
+        }
+        return value;
+    }
+
+    private void freeValue(byte[] cell) throws IOException {
+        if (cell[0] != OVERFLOW) {
+            return;
+        }
+        int page = ByteBuffer.wrap(cell, 1, 4).getInt();
+        while (page != 0) {
+            int next = ByteBuffer.wrap(pages.read(page)).getInt(0);
+            pages.free(page);
+            page = next;
+        }
+    }
+
+    // Node encoding
+    private Node readNode(int page) throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(pages.read(page));
+        boolean leaf = data.get() == LEAF;
+        int count = data.getShort() & 0xFFFF;
+        Node node = new Node(leaf, count + 1);
+        if (node.leaf) {
+            node.next = data.getInt();
+        } else {
+            node.children.add(data.getInt());
+        }
+        for (int i = 0; i < count; i++) {
+            byte[] key = new byte[data.getShort() & 0xFFFF];
+            data.get(key);
+            node.keys.add(key);
+            if (node.leaf) {
+                byte[] cell = new byte[data.getShort() & 0xFFFF];
+                data.get(cell);
+                node.cells.add(cell);
+            } else {
+                node.children.add(data.getInt());
+            }
+        }
+        return node;
+    }
+
+    private void writeNode(int page, Node node) {
+        ByteBuffer data = ByteBuffer.allocate(PageFile.PAGE_SIZE);
+        data.put(node.leaf ? LEAF : INTERNAL);
+        data.putShort((short) node.keys.size());
+        data.putInt(node.leaf ? node.next : node.children.get(0));
+        for (int i = 0; i < node.keys.size(); i++) {
+            byte[] key = node.keys.get(i);
+            data.putShort((short) key.length).put(key);
+            if (node.leaf) {
+                byte[] cell = node.cells.get(i);
+                data.putShort((short) cell.length).put(cell);
+            } else {
+                data.putInt(node.children.get(i + 1));
+            }
+        }
+        pages.write(page, data.array());
+    }
+
+    /**
+     * Decoded page. Leaves hold value cells; internal nodes hold one more
+     * child than keys.
+     */
+    private static class Node {
+        final boolean leaf;
+        int next;
+        final List<byte[]> keys;
+        final List<byte[]> cells;
+        final List<Integer> children;
+
+        Node(boolean leaf) {
+            this(leaf, 10);
+        }
+
+        // Sized for the given number of entries
+        Node(boolean leaf, int capacity) {
+            this.leaf = leaf;
+            this.keys = new ArrayList<>(capacity);
+            this.cells = new ArrayList<>(leaf ? capacity : 0);
+            this.children = new ArrayList<>(leaf ? 0 : capacity + 1);
+        }
+
+        int entrySize(int index) {
+            int keySize = 2 + keys.get(index).length;
+            return leaf ? keySize + 2 + cells.get(index).length : keySize + 4;
+        }
+
+        // Encoded size in bytes
+        int size() {
+            int size = NODE_HEADER_SIZE;
+            for (int i = 0; i < keys.size(); i++) {
+                size += entrySize(i);
+            }
+            return size;
+        }
+    }
+
+    private static class Split {
+        final byte[] key;
+        final int page;
+
+        Split(byte[] key, int page) {
+            this.key = key;
+            this.page = page;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package storage;
+
+import managers.ExpenseChangeEvent;
+import managers.ExpenseChangeListener;
+import models.Expense;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Writes each ExpenseManager change through to a StorageBackend, one batch
+ * per event, on a single writer thread so edits never wait for the disk.
+ *
+ * Changes are committed in the order they happened. When a commit fails the
+ * change and every later one are kept and retried, in order, until the
+ * backend accepts them; the error handler hears about the first failure of
+ * each outage.
+ */
+public class BackendSync implements ExpenseChangeListener {
+    public static final long RETRY_MILLIS = 5000;
+
+    private final StorageBackend backend;
+    private final Consumer<IOException> errorHandler;
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "backend-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Only touched on the writer thread, or after it has stopped
+    private final Deque<ExpenseChangeEvent> pending = new ArrayDeque<>();
+    private ScheduledFuture<?> retry;
+    private boolean failing;
+
+    /**
+     * @param errorHandler told when writes start failing; called on the writer thread
+     */
+    public BackendSync(StorageBackend backend, Consumer<IOException> errorHandler) {
+        this.backend = backend;
+        this.errorHandler = errorHandler;
+    }
+
+    @Override
+    public void expensesChanged(ExpenseChangeEvent event) {
+        if (event.getType() == ExpenseChangeEvent.Type.CATEGORY_ADDED) {
+            return;
+        }
+        writer.execute(() -> {
+            pending.add(event);
+            // While failing, the scheduled retry writes it
+            if (retry == null) {
+                flush();
+            }
+        });
+    }
+
+    private void flush() {
+        retry = null;
+        try {
+            commitPending();
+            failing = false;
+        } catch (IOException e) {
+            System.err.println("Could not write " + pending.peek() + " to storage: " + e.getMessage());
+            if (!failing) {
+                failing = true;
+                errorHandler.accept(e);
+            }
+            retry = writer.schedule(this::flush, RETRY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void commitPending() throws IOException {
+        while (!pending.isEmpty()) {
+            backend.commit(toBatch(pending.peek()));
+            pending.poll();
+        }
+    }
+
+    private StorageBackend.Batch toBatch(ExpenseChangeEvent event) throws IOException {
+        StorageBackend.Batch batch = new StorageBackend.Batch();
+        switch (event.getType()) {
+            case ADDED:
+            case UPDATED:
+                event.getExpenses().forEach(batch::put);
+                break;
+            case DELETED:
+                event.getPreviousExpenses().forEach(expense -> batch.delete(expense.getId()));
+                break;
+            case BULK_REPLACED:
+                // Drop stored expenses missing from the new set, then write the set
+                Set<String> kept = new HashSet<>();
+                for (Expense expense : event.getExpenses()) {
+                    kept.add(expense.getId());
+                    batch.put(expense);
+                }
+                for (Expense stored : backend.scanAll()) {
+                    if (!kept.contains(stored.getId())) {
+                        batch.delete(stored.getId());
+                    }
+                }
+                break;
+            case CATEGORY_ADDED:
+                break;
+        }
+        return batch;
+    }
+
+    /**
+     * Stops the writer after it has committed everything queued. Throws if
+     * changes are still unwritten because the backend keeps failing.
+     */
+    public void shutdown() throws IOException {
+        writer.execute(() -> {
+            if (retry != null) {
+                retry.cancel(false);
+                retry = null;
+            }
+        });
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(30, TimeUnit.SECONDS)) {
+                throw new IOException("storage is still busy writing changes");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while writing changes");
+        }
+        // One last attempt for whatever failed earlier
+        commitPending();
+    }
+}
@@ -0,0 +1,185 @@
+package storage;
+
+import java.nio.charset.Charset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Describes the CSV layout of one bank's statement export: which column
+ * holds what, how dates and amounts are written, and which sign spending
+ * has. Saved in bank-mappings.json; columns are zero-based and -1 means
+ * the statement has no such column.
+ */
+public class BankMapping {
+    private String name;
+    private char delimiter = ',';
+    private String charset = "UTF-8";
+    // Lines before the first transaction, usually the column titles
+    private int headerLines = 1;
+    private int dateColumn = 0;
+    private String datePattern = "yyyy-MM-dd";
+    private int descriptionColumn = 1;
+    private int amountColumn = 2;
+    // Banks that split money out and money in across two columns
+    private int debitColumn = -1;
+    private int categoryColumn = -1;
+    private int notesColumn = -1;
+    private char decimalSeparator = '.';
+    // Whether spending is shown as negative amounts; positive rows are then income and skipped
+    private boolean spendingNegative = true;
+
+    private transient DateTimeFormatter dateFormatter;
+
+    public BankMapping() {
+    }
+
+    public BankMapping(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Layouts offered when bank-mappings.json does not exist yet
+     */
+    public static List<BankMapping> getDefaultMappings() {
+        List<BankMapping> mappings = new ArrayList<>();
+        mappings.add(new BankMapping("Generic (yyyy-MM-dd, Date/Description/Amount)"));
+
+        BankMapping us = new BankMapping("US (MM/dd/yyyy, Date/Description/Amount)");
+        us.setDatePattern("MM/dd/yyyy");
+        mappings.add(us);
+
+        BankMapping europe = new BankMapping("Europe (dd.MM.yyyy; decimal comma)");
+        europe.setDelimiter(';');
+        europe.setDatePattern("dd.MM.yyyy");
+        europe.setDecimalSeparator(',');
+        mappings.add(europe);
+
+        BankMapping debitCredit = new BankMapping("Debit/Credit columns (Date/Description/Debit/Credit)");
+        debitCredit.setDebitColumn(2);
+        debitCredit.setAmountColumn(-1);
+        debitCredit.setSpendingNegative(false);
+        mappings.add(debitCredit);
+        return mappings;
+    }
+
+    // Getters and Setters
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public char getDelimiter() {
+        return delimiter;
+    }
+
+    public void setDelimiter(char delimiter) {
+        this.delimiter = delimiter;
+    }
+
+    public Charset getCharset() {
+        return Charset.forName(charset);
+    }
+
+    public void setCharset(String charset) {
+        this.charset = charset;
+    }
+
+    public int getHeaderLines() {
+        return headerLines;
+    }
+
+    public void setHeaderLines(int headerLines) {
+        this.headerLines = headerLines;
+    }
+
+    public int getDateColumn() {
+        return dateColumn;
+    }
+
+    public void setDateColumn(int dateColumn) {
+        this.dateColumn = dateColumn;
+    }
+
+    public String getDatePattern() {
+        return datePattern;
+    }
+
+    public void setDatePattern(String datePattern) {
+        this.datePattern = datePattern;
+        this.dateFormatter = null;
+    }
+
+    public DateTimeFormatter getDateFormatter() {
+        DateTimeFormatter formatter = dateFormatter;
+        if (formatter == null) {
+            formatter = DateTimeFormatter.ofPattern(datePattern);
+            dateFormatter = formatter;
+        }
+        return formatter;
+    }
+
+    public int getDescriptionColumn() {
+        return descriptionColumn;
+    }
+
+    public void setDescriptionColumn(int descriptionColumn) {
+        this.descriptionColumn = descriptionColumn;
+    }
+
+    public int getAmountColumn() {
+        return amountColumn;
+    }
+
+    public void setAmountColumn(int amountColumn) {
+        this.amountColumn = amountColumn;
+    }
+
+    public int getDebitColumn() {
+        return debitColumn;
+    }
+
+    public void setDebitColumn(int debitColumn) {
+        this.debitColumn = debitColumn;
+    }
+
+    public int getCategoryColumn() {
+        return categoryColumn;
+    }
+
+    public void setCategoryColumn(int categoryColumn) {
+        this.categoryColumn = categoryColumn;
+    }
+
+    public int getNotesColumn() {
+        return notesColumn;
+    }
+
+    public void setNotesColumn(int notesColumn) {
+        this.notesColumn = notesColumn;
+    }
+
+    public char getDecimalSeparator() {
+        return decimalSeparator;
+    }
+
+    public void setDecimalSeparator(char decimalSeparator) {
+        this.decimalSeparator = decimalSeparator;
+    }
+
+    public boolean isSpendingNegative() {
+        return spendingNegative;
+    }
+
+    public void setSpendingNegative(boolean spendingNegative) {
+        this.spendingNegative = spendingNegative;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,40 @@
+package storage;
+
+import models.Category;
+
+import java.awt.Color;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps category ids read from disk to one shared Category instance per id,
+ * so loading a million expenses does not create a million categories.
+ */
+class CategoryResolver {
+    private final Map<String, Category> categories = new HashMap<>();
+
+    CategoryResolver(Collection<Category> knownCategories) {
+        for (Category category : knownCategories) {
+            categories.putIfAbsent(category.getId(), category);
+        }
+    }
+
+    /**
+     * Returns the known category with this id, or a shared placeholder when
+     * the id is missing from categories.json
+     */
+    Category resolve(String id) {
+        return categories.computeIfAbsent(id,
+                unknown -> new Category(unknown, "Unknown", new Color(128, 128, 128), "📦"));
+    }
+
+    /**
+     * Returns the known category with the same id as one embedded in an
+     * older file, keeping the embedded copy if the id is new
+     */
+    Category resolve(Category embedded) {
+        Category known = categories.putIfAbsent(embedded.getId(), embedded);
+        return known != null ? known : embedded;
+    }
+}
@@ -0,0 +1,367 @@
+package storage;
+
+import managers.ExpenseManager;
+import managers.ExpenseVisitor;
+import models.Category;
+import models.Expense;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Streaming CSV export following RFC 4180.
+ *
+ * Rows are encoded straight into one reusable UTF-8 byte buffer with no
+ * per-row formatting or string building, so export runs at disk speed.
+ * Text fields are always quoted with embedded quotes doubled, which also
+ * keeps commas and line breaks inside descriptions and notes intact.
+ * Lines end in CRLF and amounts always use a '.' decimal point.
+ */
+public class CsvExporter {
+    public static final String HEADER = "ID,Description,Amount,Category,Date,Notes";
+
+    // Rows between progress callbacks
+    private static final int PROGRESS_INTERVAL = 8192;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Receives export progress from the exporting thread
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        /**
+         * Called every few thousand rows and once at the end
+         *
+         * @param scanned rows examined so far, including filtered-out ones
+         * @param total rows that will be examined
+         * @return false to cancel the export
+         */
+        boolean progress(int scanned, int total);
+    }
+
+    private LocalDate from;
+    private LocalDate to;
+    private Set<String> categoryIds;
+
+    /**
+     * Limits the export to expenses dated from start to end, inclusive; a null
+     * bound leaves that end open
+     */
+    public CsvExporter setDateRange(LocalDate from, LocalDate to) {
+        this.from = from;
+        this.to = to;
+        return this;
+    }
+
+    /**
+     * Limits the export to the given categories; null exports all of them
+     */
+    public CsvExporter setCategories(Collection<Category> categories) {
+        if (categories == null) {
+            categoryIds = null;
+        } else {
+            categoryIds = new HashSet<>();
+            for (Category category : categories) {
+                categoryIds.add(category.getId());
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Exports the manager's expenses oldest first, read straight from its
+     * date index with nothing copied. With a date range set, only the months
+     * in range are loaded. Edits wait while the rows are written.
+     *
+     * @return number of rows written
+     * @throws CancellationException if the listener cancelled; the target is left untouched
+     */
+    public int export(ExpenseManager manager, Path target, ProgressListener listener) throws IOException {
+        return writeAtomically(target, out -> write(manager, out, listener));
+    }
+
+    /**
+     * Exports the given expenses in list order
+     *
+     * @return number of rows written
+     */
+    public int export(List<Expense> expenses, Path target, ProgressListener listener) throws IOException {
+        return writeAtomically(target, out -> write(expenses, out, listener));
+    }
+
+    @FunctionalInterface
+    private interface RowSource {
+        int writeTo(OutputStream out) throws IOException;
+    }
+
+    // Writes to a temp file and renames it over the target, so a failed or
+    // cancelled export never leaves a partial file behind
+    private static int writeAtomically(Path target, RowSource source) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            int rows;
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                rows = source.writeTo(out);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            return rows;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Writes the header and every matching expense in the manager to the stream
+     *
+     * @return number of rows written
+     */
+    public int write(ExpenseManager manager, OutputStream out, ProgressListener listener) throws IOException {
+        RowWriter writer = new RowWriter(out);
+        writer.writeAscii(HEADER);
+        writer.endLine();
+
+        ExportVisitor visitor = new ExportVisitor(writer, listener);
+        manager.forEachInRange(from, to, visitor);
+        writer.flush();
+        if (listener != null) {
+            listener.progress(visitor.total, visitor.total);
+        }
+        return visitor.rows;
+    }
+
+    /**
+     * Writes the header and every matching expense to the stream
+     *
+     * @return number of rows written
+     */
+    public int write(List<Expense> expenses, OutputStream out, ProgressListener listener) throws IOException {
+        RowWriter writer = new RowWriter(out);
+        writer.writeAscii(HEADER);
+        writer.endLine();
+
+        int total = expenses.size();
+        int rows = 0;
+        for (int i = 0; i < total; i++) {
+            if (listener != null && i % PROGRESS_INTERVAL == 0 && !listener.progress(i, total)) {
+                throw new CancellationException("Export cancelled");
+            }
+            Expense expense = expenses.get(i);
+            if (!matches(expense)) {
+                continue;
+            }
+            writer.writeRow(expense);
+            rows++;
+        }
+        writer.flush();
+        if (listener != null) {
+            listener.progress(total, total);
+        }
+        return rows;
+    }
+
+    private boolean matches(Expense expense) {
+        LocalDate date = expense.getDate();
+        if (from != null && date.isBefore(from) || to != null && date.isAfter(to)) {
+            return false;
+        }
+        return categoryIds == null || categoryIds.contains(expense.getCategory().getId());
+    }
+
+    /**
+     * Writes the manager's expenses as it walks them, reporting progress as it goes
+     */
+    private class ExportVisitor implements ExpenseVisitor<IOException> {
+        private final RowWriter writer;
+        private final ProgressListener listener;
+        private int total;
+        private int scanned;
+        private int rows;
+
+        ExportVisitor(RowWriter writer, ProgressListener listener) {
+            this.writer = writer;
+            this.listener = listener;
+        }
+
+        @Override
+        public void begin(int total) {
+            this.total = total;
+        }
+
+        @Override
+        public boolean visit(Expense expense) throws IOException {
+            if (listener != null && scanned % PROGRESS_INTERVAL == 0 && !listener.progress(scanned, total)) {
+                throw new CancellationException("Export cancelled");
+            }
+            scanned++;
+            if (matches(expense)) {
+                writer.writeRow(expense);
+                rows++;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Encodes rows into a reusable byte buffer
+     */
+    private static class RowWriter {
+        private final OutputStream out;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int position;
+
+        RowWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        void writeRow(Expense expense) throws IOException {
+            writeQuoted(expense.getId());
+            writeByte(',');
+            writeQuoted(expense.getDescription());
+            writeByte(',');
+            writeAmount(expense.getAmount());
+            writeByte(',');
+            writeQuoted(expense.getCategory().getName());
+            writeByte(',');
+            writeDate(expense.getDate());
+            writeByte(',');
+            writeQuoted(expense.getNotes());
+            endLine();
+        }
+
+        void endLine() throws IOException {
+            writeByte('\r');
+            writeByte('\n');
+        }
+
+        // Null is written as an empty quoted field
+        private void writeQuoted(String value) throws IOException {
+            writeByte('"');
+            if (value != null) {
+                int length = value.length();
+                for (int i = 0; i < length; i++) {
+                    if (position + 4 > buffer.length) {
+                        flushBuffer();
+                    }
+                    char c = value.charAt(i);
+                    if (c < 0x80) {
+                        if (c == '"') {
+                            buffer[position++] = '"';
+                        }
+                        buffer[position++] = (byte) c;
+                    } else if (c < 0x800) {
+                        buffer[position++] = (byte) (0xC0 | c >> 6);
+                        buffer[position++] = (byte) (0x80 | c & 0x3F);
+                    } else if (Character.isSurrogate(c)) {
+                        int codePoint = Character.isHighSurrogate(c) && i + 1 < length
+                                && Character.isLowSurrogate(value.charAt(i + 1))
+                                ? Character.toCodePoint(c, value.charAt(++i)) : -1;
+                        if (codePoint < 0) {
+                            // Unpaired surrogate, replaced as String.getBytes does
+                            buffer[position++] = '?';
+                        } else {
+                            buffer[position++] = (byte) (0xF0 | codePoint >> 18);
+                            buffer[position++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                            buffer[position++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                            buffer[position++] = (byte) (0x80 | codePoint & 0x3F);
+                        }
+                    } else {
+                        buffer[position++] = (byte) (0xE0 | c >> 12);
+                        buffer[position++] = (byte) (0x80 | c >> 6 & 0x3F);
+                        buffer[position++] = (byte) (0x80 | c & 0x3F);
+                    }
+                }
+            }
+            writeByte('"');
+        }
+
+        // Two decimals, rounded half up like %.2f
+        private void writeAmount(double amount) throws IOException {
+            double scaled = amount * 100;
+            long cents = Math.round(scaled);
+            // Near a half cent the double product can round the wrong way; defer to BigDecimal
+            if (amount < 0 || scaled >= 1e15 || Double.isNaN(scaled) || Math.abs(Math.abs(scaled - cents) - 0.5) < 1e-6) {
+                writeAscii(Double.isFinite(amount)
+                        ? BigDecimal.valueOf(amount).setScale(2, RoundingMode.HALF_UP).toPlainString()
+                        : Double.toString(amount));
+                return;
+            }
+            writeLong(cents / 100);
+            writeByte('.');
+            int fraction = (int) (cents % 100);
+            writeByte('0' + fraction / 10);
+            writeByte('0' + fraction % 10);
+        }
+
+        private void writeDate(LocalDate date) throws IOException {
+            int year = date.getYear();
+            if (year < 1000 || year > 9999) {
+                writeByte('"');
+                writeAscii(date.toString());
+                writeByte('"');
+                return;
+            }
+            writeByte('"');
+            writeLong(year);
+            writeByte('-');
+            writeTwoDigits(date.getMonthValue());
+            writeByte('-');
+            writeTwoDigits(date.getDayOfMonth());
+            writeByte('"');
+        }
+
+        private void writeTwoDigits(int value) throws IOException {
+            writeByte('0' + value / 10);
+            writeByte('0' + value % 10);
+        }
+
+        private void writeLong(long value) throws IOException {
+            if (position + 20 > buffer.length) {
+                flushBuffer();
+            }
+            if (value == 0) {
+                buffer[position++] = '0';
+                return;
+            }
+            int end = position + 19;
+            int start = end;
+            while (value > 0) {
+                buffer[--start] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            int length = end - start;
+            System.arraycopy(buffer, start, buffer, position, length);
+            position += length;
+        }
+
+        void writeAscii(String value) throws IOException {
+            for (int i = 0; i < value.length(); i++) {
+                writeByte(value.charAt(i));
+            }
+        }
+
+        private void writeByte(int b) throws IOException {
+            if (position == buffer.length) {
+                flushBuffer();
+            }
+            buffer[position++] = (byte) b;
+        }
+
+        private void flushBuffer() throws IOException {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+
+        void flush() throws IOException {
+            flushBuffer();
+            out.flush();
+        }
+    }
+}
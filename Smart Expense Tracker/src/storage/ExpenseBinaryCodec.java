@@ -0,0 +1,265 @@
+package storage;
+
+import models.Category;
+import models.Expense;
+
+import java.awt.Color;
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Versioned binary format for the expenses file.
+ *
+ * Layout, all integers big-endian:
+ * <pre>
+ *   header      magic, format version, expense count, category count,
+ *               record offset, heap offset
+ *   categories  fixed-width entries: id, name and icon heap refs, RGB color
+ *   records     fixed-width entries: amount, epoch day, category index,
+ *               flags, UUID bits (or heap ref for other ids), description
+ *               and notes heap refs
+ *   heap        UTF-8 strings, each distinct string stored once
+ * </pre>
+ * A heap ref is an offset and a byte length; length -1 means null. Files
+ * are read through a memory-mapped channel, so loading is a straight walk
+ * over fixed-width records with no parsing.
+ */
+class ExpenseBinaryCodec {
+    static final int MAGIC = 0x53455442; // "SETB"
+    static final int FORMAT_VERSION = 1;
+
+    private static final int HEADER_SIZE = 32;
+    private static final int CATEGORY_SIZE = 28;
+    private static final int RECORD_SIZE = 52;
+
+    // Record flags
+    private static final int FLAG_HEAP_ID = 1;
+
+    // Writing
+    /**
+     * Writes the expenses and the categories they use. Only the string heap
+     * is buffered; records are streamed straight to the output.
+     */
+    void write(OutputStream target, Collection<Expense> expenses) throws IOException {
+        Heap heap = new Heap();
+
+        // Category table holds every category referenced by the expenses
+        Map<String, Integer> categoryIndexes = new HashMap<>();
+        List<Category> categories = new ArrayList<>();
+        for (Expense expense : expenses) {
+            Category category = expense.getCategory();
+            if (categoryIndexes.putIfAbsent(category.getId(), categories.size()) == null) {
+                categories.add(category);
+            }
+        }
+
+        long recordOffset = HEADER_SIZE + (long) categories.size() * CATEGORY_SIZE;
+        long heapOffset = recordOffset + (long) expenses.size() * RECORD_SIZE;
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(target, 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(expenses.size());
+        out.writeInt(categories.size());
+        out.writeLong(recordOffset);
+        out.writeLong(heapOffset);
+
+        for (Category category : categories) {
+            heap.writeRef(out, category.getId());
+            heap.writeRef(out, category.getName());
+            heap.writeRef(out, category.getIcon());
+            Color color = category.getColor();
+            out.writeInt(color != null ? color.getRGB() : 0);
+        }
+
+        int written = 0;
+        for (Expense expense : expenses) {
+            out.writeDouble(expense.getAmount());
+            out.writeInt((int) expense.getDate().toEpochDay());
+            out.writeInt(categoryIndexes.get(expense.getCategory().getId()));
+
+            UUID uuid = parseUuid(expense.getId());
+            if (uuid != null) {
+                out.writeInt(0);
+                out.writeLong(uuid.getMostSignificantBits());
+                out.writeLong(uuid.getLeastSignificantBits());
+            } else {
+                out.writeInt(FLAG_HEAP_ID);
+                out.writeLong(0);
+                heap.writeRef(out, expense.getId());
+            }
+            heap.writeRef(out, expense.getDescription());
+            heap.writeRef(out, expense.getNotes());
+            written++;
+        }
+        if (written != expenses.size()) {
+            throw new ConcurrentModificationException("Expenses changed while being written");
+        }
+
+        heap.bytes.writeTo(out);
+        out.flush();
+    }
+
+    // Reading
+    /**
+     * Streams every expense in the file to the consumer. Table entries whose
+     * id is among the given categories resolve to those instances.
+     *
+     * @return number of expenses read
+     */
+    int read(Path path, Collection<Category> knownCategories, Consumer<Expense> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            try {
+                return read(buffer, new CategoryResolver(knownCategories), consumer);
+            } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+                throw new IOException("Truncated expense file: " + path, e);
+            }
+        }
+    }
+
+    private int read(ByteBuffer buffer, CategoryResolver resolver, Consumer<Expense> consumer) throws IOException {
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a binary expense file");
+        }
+        int version = buffer.getInt(4);
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported binary expense format version " + version);
+        }
+        int count = buffer.getInt(8);
+        int categoryCount = buffer.getInt(12);
+        int recordOffset = toInt(buffer.getLong(16));
+        int heapOffset = toInt(buffer.getLong(24));
+        if ((long) recordOffset + (long) count * RECORD_SIZE != heapOffset || heapOffset > buffer.limit()) {
+            throw new IOException("Corrupt binary expense file header");
+        }
+
+        StringReader strings = new StringReader(buffer, heapOffset);
+
+        Category[] categories = new Category[categoryCount];
+        for (int i = 0; i < categoryCount; i++) {
+            int at = HEADER_SIZE + i * CATEGORY_SIZE;
+            categories[i] = resolver.resolve(new Category(
+                    strings.read(at),
+                    strings.read(at + 8),
+                    new Color(buffer.getInt(at + 24)),
+                    strings.read(at + 16)
+            ));
+        }
+
+        for (int i = 0; i < count; i++) {
+            int at = recordOffset + i * RECORD_SIZE;
+            double amount = buffer.getDouble(at);
+            LocalDate date = LocalDate.ofEpochDay(buffer.getInt(at + 8));
+            Category category = categories[buffer.getInt(at + 12)];
+            String id = (buffer.getInt(at + 16) & FLAG_HEAP_ID) != 0
+                    ? strings.read(at + 28)
+                    : new UUID(buffer.getLong(at + 20), buffer.getLong(at + 28)).toString();
+            consumer.accept(new Expense(id, strings.read(at + 36), amount, category, date, strings.read(at + 44)));
+        }
+        return count;
+    }
+
+    private static int toInt(long offset) throws IOException {
+        if (offset < 0 || offset > Integer.MAX_VALUE) {
+            throw new IOException("Binary expense file offset out of range");
+        }
+        return (int) offset;
+    }
+
+    private static UUID parseUuid(String id) {
+        if (id.length() != 36) {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(id);
+            // Only pack ids that round-trip exactly
+            return uuid.toString().equals(id) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * String heap being built; repeated strings share one entry
+     */
+    private static class Heap {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        // Packed (offset << 32 | length) of each string already in the heap
+        private final Map<String, Long> refs = new HashMap<>();
+
+        void writeRef(DataOutput out, String value) throws IOException {
+            if (value == null) {
+                out.writeInt(0);
+                out.writeInt(-1);
+                return;
+            }
+            Long ref = refs.get(value);
+            if (ref == null) {
+                byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+                if (bytes.size() > Integer.MAX_VALUE - encoded.length) {
+                    throw new IOException("String heap too large for binary expense format");
+                }
+                ref = ((long) bytes.size() << 32) | encoded.length;
+                bytes.write(encoded);
+                refs.put(value, ref);
+            }
+            out.writeLong(ref);
+        }
+    }
+
+    /**
+     * Decodes heap refs, reusing the String for refs it has just seen
+     */
+    private static class StringReader {
+        private static final int CACHE_SIZE = 1024;
+
+        private final ByteBuffer buffer;
+        private final int heapOffset;
+        private final int[] cachedOffsets = new int[CACHE_SIZE];
+        private final String[] cachedStrings = new String[CACHE_SIZE];
+        private byte[] scratch = new byte[256];
+
+        StringReader(ByteBuffer buffer, int heapOffset) {
+            this.buffer = buffer.duplicate();
+            this.heapOffset = heapOffset;
+        }
+
+        String read(int refPosition) {
+            int offset = buffer.getInt(refPosition);
+            int length = buffer.getInt(refPosition + 4);
+            if (length < 0) {
+                return null;
+            }
+            if (length == 0) {
+                return "";
+            }
+
+            // Shared heap entries decode to a shared String
+            int slot = offset & (CACHE_SIZE - 1);
+            String cached = cachedStrings[slot];
+            if (cached != null && cachedOffsets[slot] == offset) {
+                return cached;
+            }
+
+            if (length > scratch.length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            buffer.position(heapOffset + offset);
+            buffer.get(scratch, 0, length);
+            String value = new String(scratch, 0, length, StandardCharsets.UTF_8);
+            cachedOffsets[slot] = offset;
+            cachedStrings[slot] = value;
+            return value;
+        }
+    }
+}
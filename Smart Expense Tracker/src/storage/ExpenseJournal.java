@@ -0,0 +1,480 @@
+package storage;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import managers.ExpenseChangeEvent;
+import managers.ExpenseChangeListener;
+import managers.ExpenseManager;
+import managers.ExpenseSnapshot;
+import models.Category;
+import models.Expense;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Append-only write-ahead journal of expense changes.
+ *
+ * Each add, update or delete is appended as one JSON line by a writer
+ * thread, in the order the changes happened, so the thread making the
+ * change never waits on disk. The writer flushes once it has caught up
+ * with every queued change; a crash loses only the changes still queued or
+ * unflushed. Batches too large to journal row by row, and bulk replaces,
+ * are saved by a checkpoint taken on the writer thread instead. On startup
+ * the journal is replayed on top of the last expenses.json snapshot. Once
+ * the journal passes the compaction threshold, a background thread writes
+ * a fresh snapshot and discards the records it covers. With segmented
+ * storage the snapshot rewrites only the months changed since the last one.
+ *
+ * Records are idempotent (put by id, delete by id), so replaying records
+ * that the snapshot already contains leaves the result unchanged. Put
+ * records store the category id only, like expenses.json. Each expense
+ * record also names the month the replaced or deleted row was stored in,
+ * so replay reads just that segment instead of every month.
+ */
+public class ExpenseJournal implements ExpenseChangeListener, Closeable {
+    public static final long DEFAULT_COMPACTION_THRESHOLD = 1024 * 1024;
+    // Larger batches, such as statement imports, are saved by a checkpoint instead
+    private static final int MAX_BATCH_RECORDS = 1000;
+
+    private static final String OP_PUT = "put";
+    private static final String OP_DELETE = "delete";
+    private static final String OP_CATEGORY = "category";
+
+    private final FileStorage fileStorage;
+    private final ExpenseManager expenseManager;
+    private final File journalFile;
+    // Records being folded into a snapshot by an in-flight compaction
+    private final File compactingFile;
+    private final Gson gson = FileStorage.compactGson();
+    private final ExpenseJsonCodec codec = new ExpenseJsonCodec(false, false);
+    // Changes waiting for the writer thread; the writer flushes when this is empty
+    private final BlockingQueue<Runnable> pendingWrites = new LinkedBlockingQueue<>();
+    private final ExecutorService writes = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            pendingWrites, runnable -> {
+        Thread thread = new Thread(runnable, "journal-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "journal-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Serializes snapshot writes so an older snapshot never overwrites a newer one
+    private final Object checkpointLock = new Object();
+
+    private long compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+    private Writer writer;
+    private long journalSize;
+    private boolean compacting;
+
+    // Each kind of failure is reported once, until the next success
+    private volatile Consumer<IOException> errorHandler = e -> { };
+    // Only touched on the writer thread
+    private boolean writesFailing;
+    // Only touched on the compactor thread
+    private boolean compactionFailing;
+
+    public ExpenseJournal(FileStorage fileStorage, ExpenseManager expenseManager) {
+        this.fileStorage = fileStorage;
+        this.expenseManager = expenseManager;
+        this.journalFile = fileStorage.getDataDirectory().resolve("expenses.journal").toFile();
+        this.compactingFile = fileStorage.getDataDirectory().resolve("expenses.journal.compacting").toFile();
+    }
+
+    public void setCompactionThreshold(long compactionThreshold) {
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * @param errorHandler told when appends or compactions start failing; called on the writer or compactor thread
+     */
+    public void setErrorHandler(Consumer<IOException> errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Applies any journaled changes to the manager. Call after loading the
+     * snapshot and before subscribing the journal to the manager.
+     *
+     * @return number of records applied
+     */
+    public synchronized int replay() throws IOException {
+        return replay(compactingFile) + replay(journalFile);
+    }
+
+    private int replay(File file) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+
+        int applied = 0;
+        CategoryResolver resolver = new CategoryResolver(expenseManager.getCategories());
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                Record record;
+                try {
+                    record = parse(line, resolver);
+                } catch (IOException | IllegalStateException | DateTimeParseException | JsonParseException e) {
+                    // A torn final line from a crash mid-append; nothing after it was acknowledged
+                    break;
+                }
+                if (apply(record)) {
+                    applied++;
+                }
+            }
+        }
+        return applied;
+    }
+
+    private Record parse(String line, CategoryResolver resolver) throws IOException {
+        JsonReader reader = new JsonReader(new StringReader(line));
+        Record record = new Record();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "op":
+                    record.op = reader.nextString();
+                    break;
+                case "expense":
+                    record.expense = codec.readExpense(reader, resolver);
+                    break;
+                case "id":
+                    record.id = reader.nextString();
+                    break;
+                case "month":
+                    record.month = YearMonth.parse(reader.nextString());
+                    break;
+                case "category":
+                    // Later puts in this file share the instance that gets added
+                    record.category = resolver.resolve(gson.<Category>fromJson(reader, Category.class));
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return record;
+    }
+
+    private boolean apply(Record record) {
+        switch (String.valueOf(record.op)) {
+            case OP_PUT:
+                if (record.expense == null) {
+                    return false;
+                }
+                // Put is idempotent: an existing id is replaced in place, even
+                // when it sits in a month segment that is not loaded yet
+                if (isStored(record.expense.getId(), record.month, YearMonth.from(record.expense.getDate()))) {
+                    expenseManager.updateExpense(record.expense.getId(), record.expense);
+                } else {
+                    expenseManager.addExpense(record.expense);
+                }
+                return true;
+            case OP_DELETE:
+                if (record.id == null || !isStored(record.id, record.month, record.month)) {
+                    return false;
+                }
+                expenseManager.deleteExpense(record.id);
+                return true;
+            case OP_CATEGORY:
+                if (record.category == null || expenseManager.getCategoryById(record.category.getId()) != null) {
+                    return false;
+                }
+                expenseManager.addCategory(record.category);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // Only the named months can hold the id; records written before months
+    // were recorded fall back to a lookup that may read every month
+    private boolean isStored(String id, YearMonth month, YearMonth otherMonth) {
+        if (month == null) {
+            return expenseManager.getExpenseById(id) != null;
+        }
+        Set<YearMonth> months = new HashSet<>();
+        months.add(month);
+        months.add(otherMonth);
+        expenseManager.loadMonths(months);
+        return expenseManager.containsExpense(id);
+    }
+
+    @Override
+    public void expensesChanged(ExpenseChangeEvent event) {
+        writes.execute(() -> write(event));
+    }
+
+    // Runs on the writer thread, one event at a time in the order they happened
+    private void write(ExpenseChangeEvent event) {
+        try {
+            if (event.getType() == ExpenseChangeEvent.Type.BULK_REPLACED) {
+                // Replaces every row, which put and delete records cannot express
+                checkpoint();
+            } else if (event.getExpenses().size() > MAX_BATCH_RECORDS) {
+                saveBatch(event);
+            } else {
+                appendRecords(event);
+                // Queued changes are appended first, so a burst costs one flush
+                if (pendingWrites.isEmpty()) {
+                    flush();
+                }
+            }
+            writesFailing = false;
+        } catch (IOException e) {
+            System.err.println("Could not write expense journal: " + e.getMessage());
+            if (!writesFailing) {
+                writesFailing = true;
+                errorHandler.accept(e);
+            }
+        }
+    }
+
+    // One snapshot costs less than journaling every row. It is taken here,
+    // after the change, rather than requested: a compaction already running may
+    // have read the data before the batch arrived.
+    private void saveBatch(ExpenseChangeEvent event) throws IOException {
+        try {
+            checkpoint();
+        } catch (IOException e) {
+            // Journal the rows so they survive a crash until a checkpoint succeeds
+            System.err.println("Checkpoint failed, journaling the batch instead: " + e.getMessage());
+            appendRecords(event);
+            flush();
+        }
+    }
+
+    private void appendRecords(ExpenseChangeEvent event) throws IOException {
+        switch (event.getType()) {
+            case ADDED:
+                for (Expense expense : event.getExpenses()) {
+                    append(Record.put(expense, expense));
+                }
+                break;
+            case UPDATED:
+                // Previous values line up with the new ones
+                for (int i = 0; i < event.getExpenses().size(); i++) {
+                    append(Record.put(event.getExpenses().get(i), event.getPreviousExpenses().get(i)));
+                }
+                break;
+            case DELETED:
+                for (Expense expense : event.getPreviousExpenses()) {
+                    append(Record.delete(expense));
+                }
+                break;
+            case CATEGORY_ADDED:
+                append(Record.category(event.getCategory()));
+                break;
+            default:
+                break;
+        }
+    }
+
+    private synchronized void append(Record record) throws IOException {
+        if (writer == null) {
+            writer = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(journalFile, true), StandardCharsets.UTF_8));
+            journalSize = journalFile.length();
+        }
+        String line = format(record);
+        writer.write(line);
+        writer.write('\n');
+        journalSize += line.length() + 1;
+    }
+
+    private String format(Record record) throws IOException {
+        StringWriter line = new StringWriter();
+        JsonWriter json = new JsonWriter(line);
+        json.setSerializeNulls(false);
+        json.beginObject();
+        json.name("op").value(record.op);
+        if (record.expense != null) {
+            json.name("expense");
+            codec.writeExpense(json, record.expense);
+        }
+        json.name("id").value(record.id);
+        if (record.month != null) {
+            json.name("month").value(record.month.toString());
+        }
+        if (record.category != null) {
+            json.name("category");
+            gson.toJson(record.category, Category.class, json);
+        }
+        json.endObject();
+        json.flush();
+        return line.toString();
+    }
+
+    private synchronized void flush() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        if (journalSize >= compactionThreshold) {
+            requestCompaction();
+        }
+    }
+
+    /**
+     * Schedules a background compaction unless one is already running
+     */
+    public synchronized void requestCompaction() {
+        if (compacting) {
+            return;
+        }
+        compacting = true;
+        compactor.execute(this::compact);
+    }
+
+    private void compact() {
+        try {
+            checkpoint();
+            compactionFailing = false;
+        } catch (IOException e) {
+            // The rotated records stay on disk and are replayed or folded in next time
+            System.err.println("Journal compaction failed: " + e.getMessage());
+            if (!compactionFailing) {
+                compactionFailing = true;
+                errorHandler.accept(e);
+            }
+        } finally {
+            synchronized (this) {
+                compacting = false;
+            }
+        }
+    }
+
+    /**
+     * Writes a full snapshot and discards the journal records it covers.
+     * Safe to call from any thread; concurrent checkpoints run one at a time.
+     */
+    public void checkpoint() throws IOException {
+        synchronized (checkpointLock) {
+            // Rotate before reading the snapshot: every change missing from the
+            // snapshot is then guaranteed to land in the new journal
+            rotate();
+            if (fileStorage.isSegmented()) {
+                saveChangedSegments();
+            } else {
+                ExpenseSnapshot snapshot = expenseManager.getSnapshot();
+                fileStorage.saveExpenses(snapshot.asList());
+            }
+            fileStorage.saveCategories(expenseManager.getCategories());
+            Files.deleteIfExists(compactingFile.toPath());
+        }
+    }
+
+    private void saveChangedSegments() throws IOException {
+        Map<YearMonth, List<Expense>> changed = expenseManager.takeChangedSegments();
+        try {
+            fileStorage.saveSegments(changed);
+        } catch (IOException | RuntimeException e) {
+            // Keep them pending so the next checkpoint retries
+            expenseManager.markSegmentsChanged(changed.keySet());
+            throw e;
+        }
+    }
+
+    private synchronized void rotate() throws IOException {
+        closeWriter();
+        if (!journalFile.exists()) {
+            return;
+        }
+        if (compactingFile.exists()) {
+            // A previous compaction failed; keep its records ahead of the newer ones
+            try (OutputStream out = new FileOutputStream(compactingFile, true)) {
+                Files.copy(journalFile.toPath(), out);
+            }
+            Files.delete(journalFile.toPath());
+        } else if (!journalFile.renameTo(compactingFile)) {
+            throw new IOException("Could not rotate " + journalFile);
+        }
+        journalSize = 0;
+    }
+
+    private void closeWriter() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Queued changes first; they may still request a compaction
+        writes.shutdown();
+        compactor.shutdown();
+        try {
+            writes.awaitTermination(30, TimeUnit.SECONDS);
+            compactor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            closeWriter();
+        }
+    }
+
+    /**
+     * One journal line
+     */
+    private static class Record {
+        private String op;
+        private Expense expense;
+        private String id;
+        private Category category;
+        // Month the stored row lived in before this change; null in older journals
+        private YearMonth month;
+
+        static Record put(Expense expense, Expense stored) {
+            Record record = new Record();
+            record.op = OP_PUT;
+            record.expense = expense;
+            record.month = YearMonth.from(stored.getDate());
+            return record;
+        }
+
+        static Record delete(Expense expense) {
+            Record record = new Record();
+            record.op = OP_DELETE;
+            record.id = expense.getId();
+            record.month = YearMonth.from(expense.getDate());
+            return record;
+        }
+
+        static Record category(Category category) {
+            Record record = new Record();
+            record.op = OP_CATEGORY;
+            record.category = category;
+            return record;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package storage;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import models.Category;
+import models.Expense;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Hand-written streaming codec for the expenses.json format.
+ *
+ * Reads and writes one token at a time through Gson's JsonReader and
+ * JsonWriter, without reflection or an intermediate JsonElement tree.
+ * Parsed expenses are handed to a consumer as soon as each object closes.
+ *
+ * Data files store only a "categoryId" per expense, resolved on load to the
+ * shared Category instances from categories.json. Exports can embed the
+ * full category so the file stands on its own. Both layouts are read, as
+ * are files written before category ids were introduced.
+ */
+public class ExpenseJsonCodec {
+    private final boolean prettyPrinting;
+    private final boolean embedCategories;
+
+    public ExpenseJsonCodec(boolean prettyPrinting, boolean embedCategories) {
+        this.prettyPrinting = prettyPrinting;
+        this.embedCategories = embedCategories;
+    }
+
+    // Reading
+    /**
+     * Streams every expense in a JSON array to the consumer, resolving
+     * category ids against the given categories
+     *
+     * @return number of expenses read
+     */
+    public int read(Reader source, Collection<Category> categories, Consumer<Expense> consumer) throws IOException {
+        CategoryResolver resolver = new CategoryResolver(categories);
+        JsonReader reader = new JsonReader(source);
+        if (reader.peek() == JsonToken.END_DOCUMENT) {
+            return 0;
+        }
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return 0;
+        }
+
+        int count = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            consumer.accept(readExpense(reader, resolver));
+            count++;
+        }
+        reader.endArray();
+        return count;
+    }
+
+    Expense readExpense(JsonReader reader, CategoryResolver resolver) throws IOException {
+        String id = null;
+        String description = null;
+        double amount = 0;
+        Category category = null;
+        LocalDate date = null;
+        String notes = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "id":
+                    id = reader.nextString();
+                    break;
+                case "description":
+                    description = reader.nextString();
+                    break;
+                case "amount":
+                    amount = reader.nextDouble();
+                    break;
+                case "categoryId":
+                    category = resolver.resolve(reader.nextString());
+                    break;
+                case "category":
+                    // Older files and exports embed the whole category
+                    category = resolver.resolve(readCategory(reader));
+                    break;
+                case "date":
+                    date = LocalDate.parse(reader.nextString());
+                    break;
+                case "notes":
+                    notes = reader.nextString();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new Expense(id, description, amount, category, date, notes);
+    }
+
+    private Category readCategory(JsonReader reader) throws IOException {
+        String id = null;
+        String name = null;
+        Color color = null;
+        String icon = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String field = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (field) {
+                case "id":
+                    id = reader.nextString();
+                    break;
+                case "name":
+                    name = reader.nextString();
+                    break;
+                case "color":
+                    color = readColor(reader);
+                    break;
+                case "icon":
+                    icon = reader.nextString();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new Category(id, name, color, icon);
+    }
+
+    private Color readColor(JsonReader reader) throws IOException {
+        int r = 0;
+        int g = 0;
+        int b = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "r":
+                    r = reader.nextInt();
+                    break;
+                case "g":
+                    g = reader.nextInt();
+                    break;
+                case "b":
+                    b = reader.nextInt();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new Color(r, g, b);
+    }
+
+    // Writing
+    /**
+     * Writes the expenses as a JSON array, pulling them from the iterable one at a time
+     */
+    public void write(Writer target, Iterable<Expense> expenses) throws IOException {
+        JsonWriter writer = new JsonWriter(target);
+        // Omit null fields, as reflective Gson did
+        writer.setSerializeNulls(false);
+        if (prettyPrinting) {
+            writer.setIndent("  ");
+        }
+        writer.beginArray();
+        for (Expense expense : expenses) {
+            writeExpense(writer, expense);
+        }
+        writer.endArray();
+        writer.flush();
+    }
+
+    void writeExpense(JsonWriter writer, Expense expense) throws IOException {
+        writer.beginObject();
+        writer.name("id").value(expense.getId());
+        writer.name("description").value(expense.getDescription());
+        writer.name("amount").value(expense.getAmount());
+        if (expense.getCategory() != null) {
+            if (embedCategories) {
+                writer.name("category");
+                writeCategory(writer, expense.getCategory());
+            } else {
+                writer.name("categoryId").value(expense.getCategory().getId());
+            }
+        }
+        if (expense.getDate() != null) {
+            writer.name("date").value(expense.getDate().toString());
+        }
+        writer.name("notes").value(expense.getNotes());
+        writer.endObject();
+    }
+
+    private void writeCategory(JsonWriter writer, Category category) throws IOException {
+        writer.beginObject();
+        writer.name("id").value(category.getId());
+        writer.name("name").value(category.getName());
+        Color color = category.getColor();
+        if (color != null) {
+            writer.name("color");
+            writer.beginObject();
+            writer.name("r").value(color.getRed());
+            writer.name("g").value(color.getGreen());
+            writer.name("b").value(color.getBlue());
+            writer.endObject();
+        }
+        writer.name("icon").value(category.getIcon());
+        writer.endObject();
+    }
+}
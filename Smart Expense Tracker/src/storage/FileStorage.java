@@ -1,5 +1,7 @@
 package storage;
 
+import managers.ExpenseSegmentSource;
+import managers.SegmentSummary;
 import models.Expense;
 import models.Category;
 import com.google.gson.*;
@@ -8,26 +10,101 @@ import com.google.gson.reflect.TypeToken;
 import java.awt.Color;
 import java.io.*;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Consumer;
 
 /**
- * Handles file storage operations for expenses
+ * Handles file storage operations for expenses.
+ *
+ * Expenses live either in one data file or, in segmented mode, in one file
+ * per month under data/segments with a manifest of per-month counts and
+ * totals. Segmented storage is read lazily through ExpenseSegmentSource and
+ * saved one changed month at a time.
  */
-public class FileStorage {
-    private static final String DATA_DIR = "data";
-    private static final String EXPENSES_FILE = DATA_DIR + "/expenses.json";
-    private static final String CATEGORIES_FILE = DATA_DIR + "/categories.json";
+public class FileStorage implements ExpenseSegmentSource {
+    public static final Path DEFAULT_DATA_DIR = Paths.get("data");
+    private static final int MANIFEST_VERSION = 1;
     private static final Gson gson = createGson();
+    private static final ExpenseJsonCodec expenseCodec = new ExpenseJsonCodec(false, false);
+    private static final ExpenseJsonCodec exportCodec = new ExpenseJsonCodec(true, true);
+    private static final ExpenseBinaryCodec binaryCodec = new ExpenseBinaryCodec();
+    
+    /**
+     * On-disk format of the expenses data file
+     */
+    public enum Format {
+        /** Human-readable expenses.json */
+        JSON,
+        /** Memory-mapped expenses.bin; much faster to load on large histories */
+        BINARY
+    }
+    
+    private final Path dataDir;
+    private final Path expensesFile;
+    private final Path expensesBinaryFile;
+    private final Path categoriesFile;
+    private final Path bankMappingsFile;
+    private final Path segmentsDir;
+    private final Path manifestFile;
+    private final Format format;
+    private final boolean segmented;
+    // Cached manifest, keyed and ordered by month
+    private NavigableMap<YearMonth, SegmentSummary> manifest;
     
     public FileStorage() {
+        this(Format.JSON);
+    }
+    
+    public FileStorage(Format format) {
+        this(format, false);
+    }
+    
+    public FileStorage(Format format, boolean segmented) {
+        this(DEFAULT_DATA_DIR, format, segmented);
+    }
+    
+    public FileStorage(Path dataDir, Format format, boolean segmented) {
+        this.dataDir = dataDir;
+        this.expensesFile = dataDir.resolve("expenses.json");
+        this.expensesBinaryFile = dataDir.resolve("expenses.bin");
+        this.categoriesFile = dataDir.resolve("categories.json");
+        this.bankMappingsFile = dataDir.resolve("bank-mappings.json");
+        this.segmentsDir = dataDir.resolve("segments");
+        this.manifestFile = segmentsDir.resolve("manifest.json");
+        this.format = format;
+        this.segmented = segmented;
         createDataDirectory();
     }
     
+    public Path getDataDirectory() {
+        return dataDir;
+    }
+    
+    public Format getFormat() {
+        return format;
+    }
+    
+    public boolean isSegmented() {
+        return segmented;
+    }
+    
     private void createDataDirectory() {
-        File dir = new File(DATA_DIR);
+        File dir = dataDir.toFile();
         if (!dir.exists()) {
             dir.mkdirs();
         }
@@ -37,78 +114,313 @@ public class FileStorage {
         return new GsonBuilder()
                 .registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
                 .registerTypeAdapter(Color.class, new ColorAdapter())
-                .setPrettyPrinting()
                 .create();
     }
     
-    // Save expenses to JSON
+    // Single-line Gson for record-per-line files such as the journal
+    static Gson compactGson() {
+        return gson;
+    }
+    
+    // Save expenses in the configured format
     public void saveExpenses(List<Expense> expenses) throws IOException {
-        try (Writer writer = new FileWriter(EXPENSES_FILE)) {
-            gson.toJson(expenses, writer);
+        if (format == Format.BINARY) {
+            writeStreamAtomically(expensesBinaryFile, out -> binaryCodec.write(out, expenses));
+        } else {
+            writeAtomically(expensesFile, writer -> expenseCodec.write(writer, expenses));
         }
     }
     
-    // Load expenses from JSON
+    // Load expenses in the configured format, using the categories from categories.json
     public List<Expense> loadExpenses() throws IOException {
-        File file = new File(EXPENSES_FILE);
-        if (!file.exists()) {
-            return new ArrayList<>();
+        return loadExpenses(knownCategories());
+    }
+    
+    // Load expenses, sharing the given Category instances between them
+    public List<Expense> loadExpenses(Collection<Category> categories) throws IOException {
+        List<Expense> expenses = new ArrayList<>();
+        loadExpenses(categories, expenses::add);
+        return expenses;
+    }
+    
+    /**
+     * Streams expenses from the data file to the consumer without building a list.
+     * Category ids resolve to the given instances. In binary mode, falls back to
+     * expenses.json until the first binary save.
+     *
+     * @return number of expenses read
+     */
+    public int loadExpenses(Collection<Category> categories, Consumer<Expense> consumer) throws IOException {
+        if (format == Format.BINARY && Files.exists(expensesBinaryFile)) {
+            return binaryCodec.read(expensesBinaryFile, categories, consumer);
         }
         
-        try (Reader reader = new FileReader(file)) {
-            Type listType = new TypeToken<ArrayList<Expense>>(){}.getType();
-            List<Expense> expenses = gson.fromJson(reader, listType);
-            return expenses != null ? expenses : new ArrayList<>();
+        if (!Files.exists(expensesFile)) {
+            return 0;
         }
+        return readJson(expensesFile, categories, consumer);
+    }
+    
+    private int readJson(Path path, Collection<Category> categories, Consumer<Expense> consumer) throws IOException {
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return expenseCodec.read(reader, categories, consumer);
+        }
+    }
+    
+    // Saved categories, or the defaults the manager starts with when none are saved
+    private List<Category> knownCategories() throws IOException {
+        List<Category> categories = loadCategories();
+        return categories.isEmpty() ? Arrays.asList(Category.getDefaultCategories()) : categories;
     }
     
     // Save categories to JSON
     public void saveCategories(List<Category> categories) throws IOException {
-        try (Writer writer = new FileWriter(CATEGORIES_FILE)) {
-            gson.toJson(categories, writer);
+        writeAtomically(categoriesFile, writer -> gson.toJson(categories, writer));
+    }
+    
+    private void writeAtomically(Path target, WriteAction action) throws IOException {
+        writeStreamAtomically(target, out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            action.write(writer);
+            writer.flush();
+        });
+    }
+    
+    /**
+     * Writes to a temp file and renames it over the target, so a crash
+     * mid-write leaves the previous file intact
+     */
+    private void writeStreamAtomically(Path target, StreamWriteAction action) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            action.write(out);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    private interface WriteAction {
+        void write(Writer writer) throws IOException;
+    }
+    
+    private interface StreamWriteAction {
+        void write(OutputStream out) throws IOException;
+    }
+    
+    // Month segments
+    /**
+     * Whether segmented storage has been written yet; until then the single
+     * data file is loaded and split up on the next save
+     */
+    public boolean hasSegments() {
+        return segmented && Files.exists(manifestFile);
+    }
+    
+    @Override
+    public synchronized List<SegmentSummary> getSegments() throws IOException {
+        return new ArrayList<>(manifest().values());
+    }
+    
+    @Override
+    public List<Expense> loadSegment(YearMonth month, Collection<Category> categories) throws IOException {
+        List<Expense> expenses = new ArrayList<>();
+        Path path = segmentPath(month, format);
+        if (!Files.exists(path)) {
+            // Written before a switch of format
+            path = segmentPath(month, format == Format.BINARY ? Format.JSON : Format.BINARY);
+        }
+        if (!Files.exists(path)) {
+            return expenses;
+        }
+        
+        if (path.toString().endsWith(".bin")) {
+            binaryCodec.read(path, categories, expenses::add);
+        } else {
+            readJson(path, categories, expenses::add);
+        }
+        return expenses;
+    }
+    
+    /**
+     * Rewrites the given months and the manifest; months with no expenses
+     * are deleted. Segments not in the map are left untouched.
+     */
+    public synchronized void saveSegments(Map<YearMonth, List<Expense>> changed) throws IOException {
+        if (changed.isEmpty()) {
+            return;
+        }
+        Files.createDirectories(segmentsDir);
+        
+        NavigableMap<YearMonth, SegmentSummary> updated = new TreeMap<>(manifest());
+        for (Map.Entry<YearMonth, List<Expense>> entry : changed.entrySet()) {
+            YearMonth month = entry.getKey();
+            List<Expense> expenses = entry.getValue();
+            Path path = segmentPath(month, format);
+            // A copy in the other format, written before a switch of format
+            Path otherPath = segmentPath(month, format == Format.BINARY ? Format.JSON : Format.BINARY);
+            
+            // Ordered so a crash at any step leaves the month readable: loadSegment
+            // prefers the current format, so the old copy goes only once the new one is in place
+            if (expenses.isEmpty()) {
+                Files.deleteIfExists(otherPath);
+                Files.deleteIfExists(path);
+                updated.remove(month);
+            } else {
+                if (format == Format.BINARY) {
+                    writeStreamAtomically(path, out -> binaryCodec.write(out, expenses));
+                } else {
+                    writeAtomically(path, writer -> expenseCodec.write(writer, expenses));
+                }
+                Files.deleteIfExists(otherPath);
+                updated.put(month, SegmentSummary.of(month, expenses));
+            }
+        }
+        
+        Manifest contents = new Manifest();
+        contents.version = MANIFEST_VERSION;
+        for (SegmentSummary summary : updated.values()) {
+            contents.segments.add(ManifestEntry.of(summary));
+        }
+        writeAtomically(manifestFile, writer -> gson.toJson(contents, writer));
+        manifest = updated;
+    }
+    
+    private NavigableMap<YearMonth, SegmentSummary> manifest() throws IOException {
+        if (manifest == null) {
+            manifest = readManifest();
+        }
+        return manifest;
+    }
+    
+    private NavigableMap<YearMonth, SegmentSummary> readManifest() throws IOException {
+        NavigableMap<YearMonth, SegmentSummary> summaries = new TreeMap<>();
+        if (!Files.exists(manifestFile)) {
+            return summaries;
+        }
+        
+        Manifest contents;
+        try (Reader reader = Files.newBufferedReader(manifestFile, StandardCharsets.UTF_8)) {
+            contents = gson.fromJson(reader, Manifest.class);
+        } catch (JsonParseException e) {
+            throw new IOException("Corrupt segment manifest", e);
+        }
+        if (contents == null || contents.version != MANIFEST_VERSION) {
+            throw new IOException("Unsupported segment manifest version");
+        }
+        for (ManifestEntry entry : contents.segments) {
+            SegmentSummary summary = entry.toSummary();
+            summaries.put(summary.getMonth(), summary);
+        }
+        return summaries;
+    }
+    
+    private Path segmentPath(YearMonth month, Format format) {
+        return segmentsDir.resolve(month + (format == Format.BINARY ? ".bin" : ".json"));
+    }
+    
+    /**
+     * On-disk layout of manifest.json
+     */
+    private static class Manifest {
+        private int version;
+        private List<ManifestEntry> segments = new ArrayList<>();
+    }
+    
+    private static class ManifestEntry {
+        private String month;
+        private int count;
+        private double total;
+        private Map<String, Double> categoryTotals;
+        private Map<String, Integer> categoryCounts;
+        
+        static ManifestEntry of(SegmentSummary summary) {
+            ManifestEntry entry = new ManifestEntry();
+            entry.month = summary.getMonth().toString();
+            entry.count = summary.getCount();
+            entry.total = summary.getTotal();
+            entry.categoryTotals = new TreeMap<>(summary.getCategoryTotals());
+            entry.categoryCounts = new TreeMap<>(summary.getCategoryCounts());
+            return entry;
+        }
+        
+        SegmentSummary toSummary() {
+            return new SegmentSummary(YearMonth.parse(month), count, total,
+                    categoryTotals != null ? categoryTotals : Map.of(),
+                    categoryCounts != null ? categoryCounts : Map.of());
         }
     }
     
     // Load categories from JSON
     public List<Category> loadCategories() throws IOException {
-        File file = new File(CATEGORIES_FILE);
+        File file = categoriesFile.toFile();
         if (!file.exists()) {
             return new ArrayList<>();
         }
         
-        try (Reader reader = new FileReader(file)) {
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
             Type listType = new TypeToken<ArrayList<Category>>(){}.getType();
             List<Category> categories = gson.fromJson(reader, listType);
             return categories != null ? categories : new ArrayList<>();
         }
     }
     
+    // Load statement layouts from JSON, or the built-in ones if none are saved
+    public List<BankMapping> loadBankMappings() throws IOException {
+        if (!Files.exists(bankMappingsFile)) {
+            return BankMapping.getDefaultMappings();
+        }
+        
+        try (Reader reader = Files.newBufferedReader(bankMappingsFile, StandardCharsets.UTF_8)) {
+            Type listType = new TypeToken<ArrayList<BankMapping>>(){}.getType();
+            List<BankMapping> mappings = gson.fromJson(reader, listType);
+            return mappings != null && !mappings.isEmpty() ? mappings : BankMapping.getDefaultMappings();
+        }
+    }
+    
+    // Save statement layouts to JSON
+    public void saveBankMappings(List<BankMapping> mappings) throws IOException {
+        writeAtomically(bankMappingsFile, writer -> gson.toJson(mappings, writer));
+    }
+    
     // Export to CSV
     public void exportToCSV(List<Expense> expenses, String filePath) throws IOException {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(filePath))) {
-            // Write header
-            writer.println("ID,Description,Amount,Category,Date,Notes");
-            
-            // Write expenses
-            for (Expense expense : expenses) {
-                writer.printf("\"%s\",\"%s\",%.2f,\"%s\",\"%s\",\"%s\"%n",
-                        expense.getId(),
-                        expense.getDescription(),
-                        expense.getAmount(),
-                        expense.getCategory().getName(),
-                        expense.getDate().toString(),
-                        expense.getNotes() != null ? expense.getNotes() : "");
-            }
-        }
+        new CsvExporter().export(expenses, Paths.get(filePath), null);
     }
     
     // Export to JSON
     public void exportToJSON(List<Expense> expenses, String filePath) throws IOException {
-        try (Writer writer = new FileWriter(filePath)) {
-            gson.toJson(expenses, writer);
+        try (Writer writer = Files.newBufferedWriter(Paths.get(filePath), StandardCharsets.UTF_8)) {
+            exportCodec.write(writer, expenses);
         }
     }
     
+    // Import from a JSON file in the expenses.json layout, sharing the given Category instances
+    public List<Expense> importFromJSON(String filePath, Collection<Category> categories) throws IOException {
+        List<Expense> expenses = new ArrayList<>();
+        readJson(Paths.get(filePath), categories, expenses::add);
+        return expenses;
+    }
+    
+    // Export to the binary format
+    public void exportToBinary(List<Expense> expenses, String filePath) throws IOException {
+        try (OutputStream out = Files.newOutputStream(Paths.get(filePath))) {
+            binaryCodec.write(out, expenses);
+        }
+    }
+    
+    // Import from a binary expenses file, sharing the given Category instances
+    public List<Expense> importFromBinary(String filePath, Collection<Category> categories) throws IOException {
+        List<Expense> expenses = new ArrayList<>();
+        binaryCodec.read(Paths.get(filePath), categories, expenses::add);
+        return expenses;
+    }
+    
     // Custom adapters for Gson
     private static class LocalDateAdapter implements JsonSerializer<LocalDate>, JsonDeserializer<LocalDate> {
         private static final DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE;
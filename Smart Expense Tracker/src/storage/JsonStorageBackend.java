@@ -0,0 +1,143 @@
+package storage;
+
+import models.Category;
+import models.Expense;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * StorageBackend over a single expenses.json file.
+ *
+ * Keeps every expense in memory and rewrites the whole file on each
+ * commit, like the original FileStorage save. Simple and human-readable,
+ * but each edit costs a full write; PageFileBackend is the alternative for
+ * large data sets.
+ */
+public class JsonStorageBackend implements StorageBackend {
+    private final FileStorage fileStorage;
+    private final Supplier<? extends Collection<Category>> categories;
+    private final Map<String, Expense> byId = new LinkedHashMap<>();
+    // Ids per date, for range scans
+    private final NavigableMap<LocalDate, Set<String>> byDate = new TreeMap<>();
+    private boolean loaded;
+
+    /**
+     * Uses expenses.json in the data directory. The file is read on first
+     * use, resolving category ids against the categories supplied then.
+     */
+    public JsonStorageBackend(Path dataDir, Supplier<? extends Collection<Category>> categories) {
+        this.fileStorage = new FileStorage(dataDir, FileStorage.Format.JSON, false);
+        this.categories = categories;
+    }
+
+    // Queries
+    @Override
+    public synchronized Expense get(String id) throws IOException {
+        ensureLoaded();
+        Expense expense = byId.get(id);
+        return expense != null ? copyOf(expense) : null;
+    }
+
+    @Override
+    public synchronized List<Expense> scanByDate(LocalDate start, LocalDate end) throws IOException {
+        ensureLoaded();
+        List<Expense> expenses = new ArrayList<>();
+        for (Set<String> ids : byDate.subMap(start, true, end, true).values()) {
+            for (String id : ids) {
+                expenses.add(copyOf(byId.get(id)));
+            }
+        }
+        return expenses;
+    }
+
+    @Override
+    public synchronized int size() throws IOException {
+        ensureLoaded();
+        return byId.size();
+    }
+
+    // Updates
+    @Override
+    public synchronized void put(Expense expense) throws IOException {
+        commit(new Batch().put(expense));
+    }
+
+    @Override
+    public synchronized boolean delete(String id) throws IOException {
+        ensureLoaded();
+        if (!byId.containsKey(id)) {
+            return false;
+        }
+        commit(new Batch().delete(id));
+        return true;
+    }
+
+    @Override
+    public synchronized void commit(Batch batch) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        ensureLoaded();
+        for (String id : batch.getDeletes()) {
+            remove(id);
+        }
+        for (Expense expense : batch.getPuts()) {
+            index(copyOf(expense));
+        }
+
+        try {
+            fileStorage.saveExpenses(new ArrayList<>(byId.values()));
+        } catch (IOException e) {
+            // The file was replaced atomically or not at all: go back to what it holds
+            reload();
+            throw e;
+        }
+    }
+
+    private void index(Expense expense) {
+        remove(expense.getId());
+        byId.put(expense.getId(), expense);
+        byDate.computeIfAbsent(expense.getDate(), date -> new TreeSet<>()).add(expense.getId());
+    }
+
+    private void remove(String id) {
+        Expense removed = byId.remove(id);
+        if (removed == null) {
+            return;
+        }
+        Set<String> ids = byDate.get(removed.getDate());
+        ids.remove(id);
+        if (ids.isEmpty()) {
+            byDate.remove(removed.getDate());
+        }
+    }
+
+    private void ensureLoaded() throws IOException {
+        if (!loaded) {
+            reload();
+        }
+    }
+
+    private void reload() throws IOException {
+        byId.clear();
+        byDate.clear();
+        loaded = false;
+        fileStorage.loadExpenses(categories.get(), this::index);
+        loaded = true;
+    }
+
+    // Stored expenses are private copies, as they would be on disk
+    private static Expense copyOf(Expense expense) {
+        return new Expense(expense.getId(), expense.getDescription(), expense.getAmount(),
+                expense.getCategory(), expense.getDate(), expense.getNotes());
+    }
+
+    @Override
+    public void close() {
+        // Every commit is already on disk
+    }
+}
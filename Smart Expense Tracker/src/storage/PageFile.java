@@ -0,0 +1,266 @@
+package storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Single file of fixed-size pages with an LRU cache and atomic commits.
+ *
+ * Page 0 is the header. Changed pages stay in memory until commit, which
+ * first writes them to a redo log and forces it to disk, then writes them
+ * in place. A crash before the log is complete leaves the file as it was;
+ * a crash after is repaired by replaying the log on the next open.
+ */
+class PageFile implements Closeable {
+    static final int PAGE_SIZE = 4096;
+    // First header offset free for the owner of the file
+    static final int USER_HEADER_OFFSET = 32;
+
+    private static final int MAGIC = 0x53455450; // "SETP"
+    private static final int FORMAT_VERSION = 1;
+
+    // Header layout
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int PAGE_SIZE_OFFSET = 8;
+    private static final int PAGE_COUNT_OFFSET = 12;
+    private static final int FREE_HEAD_OFFSET = 16;
+
+    // Marks the end of a complete redo log
+    private static final int LOG_END = -1;
+
+    private final FileChannel channel;
+    private final Path logPath;
+    private final Map<Integer, byte[]> cache;
+    // Pages changed since the last commit, written in page order
+    private final SortedMap<Integer, byte[]> dirty = new TreeMap<>();
+
+    PageFile(Path path, int cachePages) throws IOException {
+        this.logPath = path.resolveSibling(path.getFileName() + ".log");
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, byte[]> eldest) {
+                return size() > cachePages;
+            }
+        };
+        this.channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try {
+            recover();
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.wrap(writable(0));
+                header.putInt(MAGIC_OFFSET, MAGIC);
+                header.putInt(VERSION_OFFSET, FORMAT_VERSION);
+                header.putInt(PAGE_SIZE_OFFSET, PAGE_SIZE);
+                header.putInt(PAGE_COUNT_OFFSET, 1);
+                commit();
+            } else {
+                validateHeader();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void validateHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.wrap(read(0));
+        if (header.getInt(MAGIC_OFFSET) != MAGIC) {
+            throw new IOException("Not an expense page file");
+        }
+        if (header.getInt(VERSION_OFFSET) != FORMAT_VERSION) {
+            throw new IOException("Unsupported page file version " + header.getInt(VERSION_OFFSET));
+        }
+        if (header.getInt(PAGE_SIZE_OFFSET) != PAGE_SIZE) {
+            throw new IOException("Unsupported page size " + header.getInt(PAGE_SIZE_OFFSET));
+        }
+    }
+
+    // Page access
+    /**
+     * Returns the current contents of a page. The array must not be modified.
+     */
+    byte[] read(int page) throws IOException {
+        byte[] data = dirty.get(page);
+        if (data == null) {
+            data = cache.get(page);
+        }
+        if (data == null) {
+            data = new byte[PAGE_SIZE];
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            long position = (long) page * PAGE_SIZE;
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Page " + page + " is past the end of the file");
+                }
+            }
+            cache.put(page, data);
+        }
+        return data;
+    }
+
+    /**
+     * Replaces a page; the change is kept in memory until commit
+     */
+    void write(int page, byte[] data) {
+        cache.remove(page);
+        dirty.put(page, data);
+    }
+
+    private byte[] writable(int page) throws IOException {
+        byte[] data = dirty.get(page);
+        if (data == null) {
+            data = channel.size() > (long) page * PAGE_SIZE ? read(page).clone() : new byte[PAGE_SIZE];
+            write(page, data);
+        }
+        return data;
+    }
+
+    int getHeaderInt(int offset) throws IOException {
+        return ByteBuffer.wrap(read(0)).getInt(offset);
+    }
+
+    void setHeaderInt(int offset, int value) throws IOException {
+        ByteBuffer.wrap(writable(0)).putInt(offset, value);
+    }
+
+    /**
+     * Returns a page for new data, reusing a freed one when possible
+     */
+    int allocate() throws IOException {
+        int free = getHeaderInt(FREE_HEAD_OFFSET);
+        if (free != 0) {
+            setHeaderInt(FREE_HEAD_OFFSET, ByteBuffer.wrap(read(free)).getInt(0));
+            return free;
+        }
+        int page = getHeaderInt(PAGE_COUNT_OFFSET);
+        setHeaderInt(PAGE_COUNT_OFFSET, page + 1);
+        write(page, new byte[PAGE_SIZE]);
+        return page;
+    }
+
+    void free(int page) throws IOException {
+        byte[] data = new byte[PAGE_SIZE];
+        ByteBuffer.wrap(data).putInt(0, getHeaderInt(FREE_HEAD_OFFSET));
+        write(page, data);
+        setHeaderInt(FREE_HEAD_OFFSET, page);
+    }
+
+    // Commit and recovery
+    /**
+     * Makes every change since the last commit durable, all or nothing
+     */
+    void commit() throws IOException {
+        if (dirty.isEmpty()) {
+            return;
+        }
+
+        CRC32 crc = new CRC32();
+        try (FileChannel log = FileChannel.open(logPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer pageNumber = ByteBuffer.allocate(4);
+            for (Map.Entry<Integer, byte[]> entry : dirty.entrySet()) {
+                pageNumber.clear();
+                pageNumber.putInt(0, entry.getKey());
+                crc.update(pageNumber.array());
+                crc.update(entry.getValue());
+                writeFully(log, pageNumber);
+                writeFully(log, ByteBuffer.wrap(entry.getValue()));
+            }
+            ByteBuffer end = ByteBuffer.allocate(12);
+            end.putInt(LOG_END).putLong(crc.getValue()).flip();
+            writeFully(log, end);
+            log.force(true);
+        }
+
+        for (Map.Entry<Integer, byte[]> entry : dirty.entrySet()) {
+            writeFully(channel, ByteBuffer.wrap(entry.getValue()), (long) entry.getKey() * PAGE_SIZE);
+        }
+        channel.force(true);
+        Files.deleteIfExists(logPath);
+
+        cache.putAll(dirty);
+        dirty.clear();
+    }
+
+    /**
+     * Drops uncommitted changes and returns to the last committed state
+     */
+    void rollback() throws IOException {
+        dirty.clear();
+        cache.clear();
+        recover();
+    }
+
+    private void recover() throws IOException {
+        if (!Files.exists(logPath)) {
+            return;
+        }
+
+        SortedMap<Integer, byte[]> pages = new TreeMap<>();
+        boolean complete = false;
+        CRC32 crc = new CRC32();
+        try (FileChannel log = FileChannel.open(logPath, StandardOpenOption.READ)) {
+            ByteBuffer pageNumber = ByteBuffer.allocate(4);
+            while (readFully(log, pageNumber)) {
+                int page = pageNumber.getInt(0);
+                if (page == LOG_END) {
+                    ByteBuffer checksum = ByteBuffer.allocate(8);
+                    complete = readFully(log, checksum) && checksum.getLong(0) == crc.getValue();
+                    break;
+                }
+                ByteBuffer data = ByteBuffer.allocate(PAGE_SIZE);
+                if (page < 0 || !readFully(log, data)) {
+                    break;
+                }
+                crc.update(pageNumber.array());
+                crc.update(data.array());
+                pages.put(page, data.array());
+            }
+        }
+
+        // A torn log means the commit never started writing the file itself
+        if (complete) {
+            for (Map.Entry<Integer, byte[]> entry : pages.entrySet()) {
+                writeFully(channel, ByteBuffer.wrap(entry.getValue()), (long) entry.getKey() * PAGE_SIZE);
+            }
+            channel.force(true);
+        }
+        Files.delete(logPath);
+    }
+
+    private static void writeFully(FileChannel target, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+
+    private static void writeFully(FileChannel target, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += target.write(buffer, position);
+        }
+    }
+
+    private static boolean readFully(FileChannel source, ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            if (source.read(buffer) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,200 @@
+package storage;
+
+import models.Category;
+import models.Expense;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * StorageBackend kept in a single page file (expenses.db).
+ *
+ * Expenses live in a B+tree keyed by id; a second tree keyed by date and id
+ * serves range scans. A put or delete rewrites only the pages along its
+ * path in each tree, so one edit costs O(log n) page writes however large
+ * the file grows. Every call commits atomically through the page file's
+ * redo log.
+ */
+public class PageFileBackend implements StorageBackend {
+    public static final int DEFAULT_CACHE_PAGES = 2048;
+
+    // Header slots after the page file's own fields
+    private static final int ID_ROOT_OFFSET = PageFile.USER_HEADER_OFFSET;
+    private static final int DATE_ROOT_OFFSET = PageFile.USER_HEADER_OFFSET + 4;
+    private static final int COUNT_OFFSET = PageFile.USER_HEADER_OFFSET + 8;
+
+    private static final byte[] NO_VALUE = new byte[0];
+
+    private final PageFile pages;
+    private final BPlusTree byId;
+    private final BPlusTree byDate;
+    private final Supplier<? extends Collection<Category>> categories;
+
+    /**
+     * Opens or creates the file. Stored category ids are resolved against
+     * the categories supplied at read time.
+     */
+    public PageFileBackend(Path file, Supplier<? extends Collection<Category>> categories) throws IOException {
+        this(file, categories, DEFAULT_CACHE_PAGES);
+    }
+
+    public PageFileBackend(Path file, Supplier<? extends Collection<Category>> categories,
+                           int cachePages) throws IOException {
+        this.pages = new PageFile(file, cachePages);
+        this.byId = new BPlusTree(pages, ID_ROOT_OFFSET);
+        this.byDate = new BPlusTree(pages, DATE_ROOT_OFFSET);
+        this.categories = categories;
+    }
+
+    // Queries
+    @Override
+    public synchronized Expense get(String id) throws IOException {
+        byte[] record = byId.get(idKey(id));
+        return record != null ? decode(id, record, new CategoryResolver(categories.get())) : null;
+    }
+
+    @Override
+    public synchronized List<Expense> scanByDate(LocalDate start, LocalDate end) throws IOException {
+        List<Expense> expenses = new ArrayList<>();
+        CategoryResolver resolver = new CategoryResolver(categories.get());
+        long last = end.toEpochDay();
+        byDate.scan(dateKey(start.toEpochDay(), ""), (key, value) -> {
+            ByteBuffer buffer = ByteBuffer.wrap(key);
+            if ((buffer.getLong() ^ Long.MIN_VALUE) > last) {
+                return false;
+            }
+            String id = new String(key, 8, key.length - 8, StandardCharsets.UTF_8);
+            expenses.add(decode(id, byId.get(idKey(id)), resolver));
+            return true;
+        });
+        return expenses;
+    }
+
+    @Override
+    public synchronized int size() throws IOException {
+        return pages.getHeaderInt(COUNT_OFFSET);
+    }
+
+    // Updates
+    @Override
+    public synchronized void put(Expense expense) throws IOException {
+        commit(new Batch().put(expense));
+    }
+
+    @Override
+    public synchronized boolean delete(String id) throws IOException {
+        if (byId.get(idKey(id)) == null) {
+            return false;
+        }
+        commit(new Batch().delete(id));
+        return true;
+    }
+
+    @Override
+    public synchronized void commit(Batch batch) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            for (String id : batch.getDeletes()) {
+                remove(id);
+            }
+            for (Expense expense : batch.getPuts()) {
+                remove(expense.getId());
+                byte[] id = idKey(expense.getId());
+                byId.put(id, encode(expense));
+                byDate.put(dateKey(expense.getDate().toEpochDay(), expense.getId()), NO_VALUE);
+                pages.setHeaderInt(COUNT_OFFSET, pages.getHeaderInt(COUNT_OFFSET) + 1);
+            }
+            pages.commit();
+        } catch (IOException | RuntimeException e) {
+            pages.rollback();
+            throw e;
+        }
+    }
+
+    private void remove(String id) throws IOException {
+        byte[] key = idKey(id);
+        byte[] record = byId.get(key);
+        if (record == null) {
+            return;
+        }
+        byId.delete(key);
+        byDate.delete(dateKey(ByteBuffer.wrap(record).getLong(), id));
+        pages.setHeaderInt(COUNT_OFFSET, pages.getHeaderInt(COUNT_OFFSET) - 1);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        pages.close();
+    }
+
+    // Keys and records
+    private static byte[] idKey(String id) throws IOException {
+        byte[] key = id.getBytes(StandardCharsets.UTF_8);
+        if (key.length > BPlusTree.MAX_KEY_LENGTH - 8) {
+            throw new IOException("Expense id too long: " + id);
+        }
+        return key;
+    }
+
+    // Sign-flipped so negative epoch days sort before positive ones as unsigned bytes
+    private static byte[] dateKey(long epochDay, String id) throws IOException {
+        byte[] idBytes = idKey(id);
+        return ByteBuffer.allocate(8 + idBytes.length)
+                .putLong(epochDay ^ Long.MIN_VALUE)
+                .put(idBytes)
+                .array();
+    }
+
+    private static byte[] encode(Expense expense) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        // Date first so deletes can find the date key without decoding the rest
+        out.writeLong(expense.getDate().toEpochDay());
+        out.writeDouble(expense.getAmount());
+        writeString(out, expense.getCategory() != null ? expense.getCategory().getId() : null);
+        writeString(out, expense.getDescription());
+        writeString(out, expense.getNotes());
+        return bytes.toByteArray();
+    }
+
+    private static Expense decode(String id, byte[] record, CategoryResolver resolver) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        LocalDate date = LocalDate.ofEpochDay(in.readLong());
+        double amount = in.readDouble();
+        String categoryId = readString(in);
+        String description = readString(in);
+        String notes = readString(in);
+        Category category = categoryId != null ? resolver.resolve(categoryId) : null;
+        return new Expense(id, description, amount, category, date, notes);
+    }
+
+    // Length-prefixed UTF-8; -1 marks null
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,446 @@
+package storage;
+
+import managers.DuplicateIndex;
+import managers.ExpenseManager;
+import models.Category;
+import models.Expense;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Imports a bank statement CSV in four stages.
+ * <ol>
+ *   <li>parse: the file is cut into chunks at record boundaries and each
+ *       chunk is parsed on a worker pool</li>
+ *   <li>normalize: dates and amounts are read with the bank's mapping;
+ *       income rows are dropped</li>
+ *   <li>map: each row gets a Category from the statement's own category
+ *       column or from description keywords</li>
+ *   <li>insert: rows already stored are dropped using the manager's
+ *       duplicate index, then the rest go to the manager in one addExpenses
+ *       call, so indexes and totals update once and the data is saved once</li>
+ * </ol>
+ * Stages 2 and 3 run inside the parse workers; rows keep file order.
+ */
+public class StatementImporter {
+    // Target chunk size; chunks end at the first record boundary past it
+    private static final int CHUNK_SIZE = 1 << 20;
+    // Rows whose problems are reported in detail
+    private static final int MAX_ERRORS = 20;
+
+    private final BankMapping mapping;
+    private final List<Category> categories;
+    private final Category fallbackCategory;
+    // Lower-case description keyword to category
+    private final Map<String, Category> keywords = new LinkedHashMap<>();
+    private int threads = Runtime.getRuntime().availableProcessors();
+    // Rows matching stored expenses this way are left out; null imports everything
+    private DuplicateIndex.Mode duplicateMode = DuplicateIndex.Mode.EXACT;
+
+    public StatementImporter(BankMapping mapping, Collection<Category> categories) {
+        this.mapping = mapping;
+        this.categories = new ArrayList<>(categories);
+        this.fallbackCategory = findCategory("Others", this.categories.get(this.categories.size() - 1));
+        addDefaultKeywords();
+    }
+
+    /**
+     * Sends descriptions containing the keyword, in any case, to the category.
+     * Keywords added first win.
+     */
+    public void addKeyword(String keyword, Category category) {
+        keywords.put(keyword.toLowerCase(Locale.ROOT), category);
+    }
+
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    public void setDuplicateMode(DuplicateIndex.Mode duplicateMode) {
+        this.duplicateMode = duplicateMode;
+    }
+
+    private void addDefaultKeywords() {
+        String[][] defaults = {
+            {"Food", "grocery", "supermarket", "restaurant", "cafe", "coffee", "bakery", "pizza", "burger", "food"},
+            {"Travel", "airline", "airways", "hotel", "uber", "lyft", "taxi", "railway", "train", "fuel", "parking"},
+            {"Entertainment", "netflix", "spotify", "cinema", "theatre", "theater", "steam", "concert"},
+            {"Shopping", "amazon", "ebay", "store", "mall", "market"},
+            {"Healthcare", "pharmacy", "clinic", "hospital", "dental", "doctor"},
+            {"Bills", "electric", "water", "gas", "internet", "phone", "insurance", "rent", "utility"},
+            {"Education", "tuition", "school", "university", "course", "book"}
+        };
+        for (String[] group : defaults) {
+            Category category = findCategory(group[0], null);
+            if (category == null) {
+                continue;
+            }
+            for (int i = 1; i < group.length; i++) {
+                addKeyword(group[i], category);
+            }
+        }
+    }
+
+    private Category findCategory(String name, Category otherwise) {
+        for (Category category : categories) {
+            if (category.getName().equalsIgnoreCase(name)) {
+                return category;
+            }
+        }
+        return otherwise;
+    }
+
+    /**
+     * Outcome of an import
+     */
+    public static final class Result {
+        private final List<Expense> expenses;
+        private final int lines;
+        private final int skipped;
+        private final int duplicates;
+        private final List<String> errors;
+
+        Result(List<Expense> expenses, int lines, int skipped, int duplicates, List<String> errors) {
+            this.expenses = Collections.unmodifiableList(expenses);
+            this.lines = lines;
+            this.skipped = skipped;
+            this.duplicates = duplicates;
+            this.errors = Collections.unmodifiableList(errors);
+        }
+
+        public List<Expense> getExpenses() {
+            return expenses;
+        }
+
+        /**
+         * Transaction lines read, excluding header lines
+         */
+        public int getLines() {
+            return lines;
+        }
+
+        /**
+         * Lines that were income or could not be read
+         */
+        public int getSkipped() {
+            return skipped;
+        }
+
+        /**
+         * Lines left out because the expense was already stored
+         */
+        public int getDuplicates() {
+            return duplicates;
+        }
+
+        /**
+         * The first few problems, with their line numbers
+         */
+        public List<String> getErrors() {
+            return errors;
+        }
+    }
+
+    /**
+     * Parses the statement and adds its new expenses to the manager in one
+     * batch, leaving out rows already stored, such as the overlap with a
+     * statement imported before
+     */
+    public Result importInto(Path file, ExpenseManager manager) throws IOException {
+        Result parsed = parse(file);
+        List<Expense> fresh = duplicateMode != null
+                ? manager.withoutDuplicates(parsed.getExpenses(), duplicateMode)
+                : parsed.getExpenses();
+        manager.addExpenses(fresh);
+        return new Result(fresh, parsed.getLines(), parsed.getSkipped(),
+                parsed.getExpenses().size() - fresh.size(), parsed.getErrors());
+    }
+
+    /**
+     * Runs the parse, normalize and map stages without touching the manager
+     */
+    public Result parse(Path file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        List<Chunk> chunks = split(bytes);
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, chunks.size()), runnable -> {
+            Thread thread = new Thread(runnable, "statement-import");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<ChunkResult>> futures = new ArrayList<>();
+            for (Chunk chunk : chunks) {
+                futures.add(pool.submit(() -> parseChunk(bytes, chunk)));
+            }
+
+            List<Expense> expenses = new ArrayList<>();
+            List<String> errors = new ArrayList<>();
+            int lines = 0;
+            int skipped = 0;
+            for (Future<ChunkResult> future : futures) {
+                ChunkResult part = future.get();
+                expenses.addAll(part.expenses);
+                lines += part.lines;
+                skipped += part.skipped;
+                for (String error : part.errors) {
+                    if (errors.size() < MAX_ERRORS) {
+                        errors.add(error);
+                    }
+                }
+            }
+            return new Result(expenses, lines, skipped, 0, errors);
+        } catch (ExecutionException e) {
+            throw new IOException("Could not read statement: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Stage 1: chunk boundaries
+    /**
+     * Byte range of whole records and the file line it starts on
+     */
+    private static final class Chunk {
+        final int start;
+        final int end;
+        final int firstLine;
+
+        Chunk(int start, int end, int firstLine) {
+            this.start = start;
+            this.end = end;
+            this.firstLine = firstLine;
+        }
+    }
+
+    // One sequential pass; line breaks inside quoted fields do not end a record.
+    // Scanning bytes for '"' and '\n' assumes an ASCII-compatible charset.
+    private static List<Chunk> split(byte[] bytes) {
+        List<Chunk> chunks = new ArrayList<>();
+        int start = 0;
+        int line = 1;
+        int startLine = 1;
+        boolean quoted = false;
+        for (int i = 0; i < bytes.length; i++) {
+            byte b = bytes[i];
+            if (b == '"') {
+                quoted = !quoted;
+            } else if (b == '\n') {
+                line++;
+                if (!quoted && i + 1 - start >= CHUNK_SIZE) {
+                    chunks.add(new Chunk(start, i + 1, startLine));
+                    start = i + 1;
+                    startLine = line;
+                }
+            }
+        }
+        if (start < bytes.length || chunks.isEmpty()) {
+            chunks.add(new Chunk(start, bytes.length, startLine));
+        }
+        return chunks;
+    }
+
+    // Stages 1 to 3 for one chunk
+    private static final class ChunkResult {
+        final List<Expense> expenses = new ArrayList<>();
+        final List<String> errors = new ArrayList<>();
+        int lines;
+        int skipped;
+    }
+
+    private ChunkResult parseChunk(byte[] bytes, Chunk chunk) {
+        ChunkResult result = new ChunkResult();
+        String text = new String(bytes, chunk.start, chunk.end - chunk.start, mapping.getCharset());
+        // Dates and descriptions repeat a lot in statements, so remember what they parse to
+        Map<String, LocalDate> dateCache = new HashMap<>();
+        Map<String, Category> categoryCache = new HashMap<>();
+        RecordReader reader = new RecordReader(text, mapping.getDelimiter());
+        StringBuilder amountBuffer = new StringBuilder(32);
+
+        int line = chunk.firstLine;
+        List<String> fields;
+        while ((fields = reader.next()) != null) {
+            int recordLine = line;
+            line += reader.lastRecordLines();
+            if (recordLine <= mapping.getHeaderLines() || isBlank(fields)) {
+                continue;
+            }
+            result.lines++;
+            try {
+                Expense expense = toExpense(fields, dateCache, categoryCache, amountBuffer);
+                if (expense != null) {
+                    result.expenses.add(expense);
+                } else {
+                    result.skipped++;
+                }
+            } catch (DateTimeParseException | IllegalArgumentException | IndexOutOfBoundsException e) {
+                result.skipped++;
+                if (result.errors.size() < MAX_ERRORS) {
+                    result.errors.add("Line " + recordLine + ": " + e.getMessage());
+                }
+            }
+        }
+        return result;
+    }
+
+    private static boolean isBlank(List<String> fields) {
+        return fields.size() == 1 && fields.get(0).isBlank();
+    }
+
+    // Stages 2 and 3: normalize one record and pick its category; null for income rows
+    private Expense toExpense(List<String> fields, Map<String, LocalDate> dateCache,
+                              Map<String, Category> categoryCache, StringBuilder amountBuffer) {
+        DateTimeFormatter dateFormatter = mapping.getDateFormatter();
+        LocalDate date = dateCache.computeIfAbsent(fields.get(mapping.getDateColumn()).trim(),
+                text -> LocalDate.parse(text, dateFormatter));
+        String description = fields.get(mapping.getDescriptionColumn()).trim();
+
+        double amount;
+        if (mapping.getDebitColumn() >= 0) {
+            String debit = fields.get(mapping.getDebitColumn());
+            if (debit.isBlank()) {
+                return null;
+            }
+            amount = Math.abs(parseAmount(debit, amountBuffer));
+        } else {
+            amount = parseAmount(fields.get(mapping.getAmountColumn()), amountBuffer);
+            if (mapping.isSpendingNegative()) {
+                amount = -amount;
+            }
+            if (amount <= 0) {
+                return null;
+            }
+        }
+
+        Category category = null;
+        if (mapping.getCategoryColumn() >= 0) {
+            category = findCategory(fields.get(mapping.getCategoryColumn()).trim(), null);
+        }
+        if (category == null) {
+            category = categoryCache.computeIfAbsent(description, this::categorize);
+        }
+        String notes = mapping.getNotesColumn() >= 0 ? fields.get(mapping.getNotesColumn()).trim() : null;
+        return new Expense(randomId(), description, amount, category, date,
+                notes == null || notes.isEmpty() ? null : notes);
+    }
+
+    private Category categorize(String description) {
+        String lower = description.toLowerCase(Locale.ROOT);
+        for (Map.Entry<String, Category> keyword : keywords.entrySet()) {
+            if (lower.contains(keyword.getKey())) {
+                return keyword.getValue();
+            }
+        }
+        return fallbackCategory;
+    }
+
+    /**
+     * Reads "1,234.56", "-12.00", "(12.00)", "$ 12.00" or "1.234,56" with a
+     * decimal comma, ignoring currency symbols and grouping separators
+     */
+    private double parseAmount(String value, StringBuilder buffer) {
+        buffer.setLength(0);
+        boolean negative = false;
+        char decimal = mapping.getDecimalSeparator();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                buffer.append(c);
+            } else if (c == decimal) {
+                buffer.append('.');
+            } else if (c == '-' || c == '(') {
+                negative = true;
+            }
+        }
+        if (buffer.length() == 0) {
+            throw new IllegalArgumentException("No amount in \"" + value + "\"");
+        }
+        double amount = Double.parseDouble(buffer.toString());
+        return negative ? -amount : amount;
+    }
+
+    // Version 4 UUID from a fast thread-local source; ids need to be unique, not secret
+    private static String randomId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long high = random.nextLong() & ~0xF000L | 0x4000L;
+        long low = random.nextLong() & 0x3FFFFFFFFFFFFFFFL | 0x8000000000000000L;
+        return new UUID(high, low).toString();
+    }
+
+    /**
+     * RFC 4180 record reader over one chunk of text
+     */
+    private static final class RecordReader {
+        private final String text;
+        private final char delimiter;
+        private final List<String> fields = new ArrayList<>();
+        private final StringBuilder field = new StringBuilder();
+        private int position;
+        private int recordLines;
+
+        RecordReader(String text, char delimiter) {
+            this.text = text;
+            this.delimiter = delimiter;
+        }
+
+        /**
+         * Fields of the next record, reusing one list; null at the end of the chunk
+         */
+        List<String> next() {
+            if (position >= text.length()) {
+                return null;
+            }
+            fields.clear();
+            field.setLength(0);
+            recordLines = 1;
+            boolean quoted = false;
+            int length = text.length();
+            while (position < length) {
+                char c = text.charAt(position++);
+                if (quoted) {
+                    if (c == '"') {
+                        if (position < length && text.charAt(position) == '"') {
+                            field.append('"');
+                            position++;
+                        } else {
+                            quoted = false;
+                        }
+                    } else {
+                        if (c == '\n') {
+                            recordLines++;
+                        }
+                        field.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == delimiter) {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n') {
+                    break;
+                } else if (c != '\r') {
+                    field.append(c);
+                }
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+
+        /**
+         * File lines spanned by the record last returned
+         */
+        int lastRecordLines() {
+            return recordLines;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package storage;
+
+import models.Expense;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keyed expense store with point and date-range access.
+ *
+ * Each put and delete is durable when it returns. A Batch groups many
+ * changes into one commit, which is how bulk imports and full replacements
+ * should be written.
+ */
+public interface StorageBackend extends Closeable {
+    /**
+     * Returns the stored expense with this id, or null
+     */
+    Expense get(String id) throws IOException;
+
+    /**
+     * Inserts the expense, or replaces the stored one with the same id
+     */
+    void put(Expense expense) throws IOException;
+
+    /**
+     * Removes the expense with this id
+     *
+     * @return whether it was stored
+     */
+    boolean delete(String id) throws IOException;
+
+    /**
+     * Returns expenses dated from start to end, inclusive, oldest first
+     */
+    List<Expense> scanByDate(LocalDate start, LocalDate end) throws IOException;
+
+    /**
+     * Applies every change in the batch as a single commit: deletes first, then puts
+     */
+    void commit(Batch batch) throws IOException;
+
+    /**
+     * Number of stored expenses
+     */
+    int size() throws IOException;
+
+    /**
+     * Returns every stored expense, oldest first
+     */
+    default List<Expense> scanAll() throws IOException {
+        return scanByDate(LocalDate.MIN, LocalDate.MAX);
+    }
+
+    /**
+     * Puts and deletes to commit together
+     */
+    final class Batch {
+        private final List<Expense> puts = new ArrayList<>();
+        private final List<String> deletes = new ArrayList<>();
+
+        public Batch put(Expense expense) {
+            puts.add(expense);
+            return this;
+        }
+
+        public Batch delete(String id) {
+            deletes.add(id);
+            return this;
+        }
+
+        public List<Expense> getPuts() {
+            return Collections.unmodifiableList(puts);
+        }
+
+        public List<String> getDeletes() {
+            return Collections.unmodifiableList(deletes);
+        }
+
+        public boolean isEmpty() {
+            return puts.isEmpty() && deletes.isEmpty();
+        }
+    }
+}
@@ -2,9 +2,34 @@ package ui;
 
 import java.awt.*;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import javax.swing.*;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import managers.DuplicateIndex;
+import managers.ExpenseChangeEvent;
 import managers.ExpenseManager;
+import models.Category;
+import models.Expense;
+import storage.AutosaveService;
+import storage.BackendSync;
+import storage.BankMapping;
+import storage.CsvExporter;
+import storage.ExpenseJournal;
+import storage.JsonStorageBackend;
 import storage.FileStorage;
+import storage.PageFileBackend;
+import storage.StatementImporter;
+import storage.StorageBackend;
 import ui.panels.*;
 import ui.utils.ModernUI;
 
@@ -12,30 +37,67 @@ import ui.utils.ModernUI;
  * Main application frame with modern UI
  */
 public class MainFrame extends JFrame {
+    // Months read at startup; older ones load when a view first needs them
+    private static final int EAGER_MONTHS = 3;
+    // Set to "pagefile" to keep expenses in data/expenses.db, or "json" for data/expenses.json,
+    // instead of the segment files
+    private static final String STORAGE_PROPERTY = "expense.storage";
+    // Set to true to print startup timings to the console
+    private static final String TIMING_PROPERTY = "expense.timing";
+    
     private ExpenseManager expenseManager;
     private FileStorage fileStorage;
+    private ExpenseJournal journal;
+    private AutosaveService autosave;
+    // Page-file store, or null when expenses are kept in the data files
+    private StorageBackend backend;
+    // File the backend keeps its expenses in, for messages
+    private String backendFile;
+    // Writes changes into the page file, when there is one
+    private BackendSync backendSync;
     private CardLayout cardLayout;
     private JPanel mainPanel;
     private boolean isDarkMode = false;
     
+    // Startup: data loads in the background while the frame shows progress
+    private final long startNanos;
+    private boolean firstPaint = true;
+    private boolean loaded = false;
+    private String pendingPanel = "dashboard";
+    private JLabel loadingStatus;
+    private JMenu fileMenu;
+    
     // Modern color schemes
     private Color lightBackground = ModernUI.BACKGROUND_LIGHT;
     private Color darkBackground = ModernUI.BACKGROUND_DARK;
     private Color lightForeground = ModernUI.TEXT_PRIMARY_LIGHT;
     private Color darkForeground = ModernUI.TEXT_PRIMARY_DARK;
     
-    // Panels
+    // Panels, each built the first time it is shown
     private DashboardPanel dashboardPanel;
     private ExpenseListPanel expenseListPanel;
     private AddExpensePanel addExpensePanel;
     private ReportsPanel reportsPanel;
     
     public MainFrame() {
+        this(System.nanoTime());
+    }
+    
+    /**
+     * @param startNanos System.nanoTime() at launch, for the startup timings
+     */
+    public MainFrame(long startNanos) {
+        this.startNanos = startNanos;
         expenseManager = new ExpenseManager();
-        fileStorage = new FileStorage();
-        
-        // Load data
-        loadData();
+        fileStorage = new FileStorage(FileStorage.Format.BINARY, true);
+        journal = new ExpenseJournal(fileStorage, expenseManager);
+        autosave = new AutosaveService(journal);
+        journal.setErrorHandler(e -> showStorageWarning(
+                "Could not write changes to the expense journal: " + e.getMessage()
+                        + "\nThe next autosave or compaction will try again."));
+        autosave.setErrorHandler(e -> showStorageWarning(
+                "Could not autosave: " + e.getMessage()
+                        + "\nChanges are kept in the journal and saving will be retried."));
         
         // Setup frame with modern look
         setTitle("Smart Expense Tracker");
@@ -54,27 +116,18 @@ public class MainFrame extends JFrame {
                 saveData();
             }
         });
+        
+        startLoading();
     }
     
     private void initializeUI() {
         // Create menu bar
         createMenuBar();
         
-        // Create main panel with CardLayout
+        // Create main panel with CardLayout; panels are added as they are first shown
         cardLayout = new CardLayout();
         mainPanel = new JPanel(cardLayout);
-        
-        // Initialize panels
-        dashboardPanel = new DashboardPanel(expenseManager, this);
-        expenseListPanel = new ExpenseListPanel(expenseManager, this);
-        addExpensePanel = new AddExpensePanel(expenseManager, this);
-        reportsPanel = new ReportsPanel(expenseManager, this);
-        
-        // Add panels to main panel
-        mainPanel.add(dashboardPanel, "dashboard");
-        mainPanel.add(expenseListPanel, "expenses");
-        mainPanel.add(addExpensePanel, "add");
-        mainPanel.add(reportsPanel, "reports");
+        mainPanel.add(createLoadingPanel(), "loading");
         
         // Create sidebar
         JPanel sidebar = createSidebar();
@@ -82,9 +135,40 @@ public class MainFrame extends JFrame {
         // Add components to frame
         add(sidebar, BorderLayout.WEST);
         add(mainPanel, BorderLayout.CENTER);
+    }
+    
+    private JPanel createLoadingPanel() {
+        JPanel loadingPanel = new JPanel(new GridBagLayout());
+        loadingPanel.setBackground(ModernUI.BG_COLOR);
+        
+        JPanel content = new JPanel();
+        content.setLayout(new BoxLayout(content, BoxLayout.Y_AXIS));
+        content.setOpaque(false);
         
-        // Show dashboard by default
-        showPanel("dashboard");
+        JLabel titleLabel = new JLabel("Loading your expenses…");
+        titleLabel.setFont(new Font("SF Pro Display", Font.BOLD, 20));
+        titleLabel.setForeground(ModernUI.TEXT_PRIMARY);
+        titleLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+        
+        JProgressBar progressBar = new JProgressBar();
+        progressBar.setIndeterminate(true);
+        progressBar.setMaximumSize(new Dimension(260, 6));
+        progressBar.setPreferredSize(new Dimension(260, 6));
+        progressBar.setAlignmentX(Component.CENTER_ALIGNMENT);
+        
+        loadingStatus = new JLabel(" ");
+        loadingStatus.setFont(new Font("SF Pro Text", Font.PLAIN, 13));
+        loadingStatus.setForeground(ModernUI.TEXT_SECONDARY);
+        loadingStatus.setAlignmentX(Component.CENTER_ALIGNMENT);
+        
+        content.add(titleLabel);
+        content.add(Box.createVerticalStrut(15));
+        content.add(progressBar);
+        content.add(Box.createVerticalStrut(10));
+        content.add(loadingStatus);
+        
+        loadingPanel.add(content);
+        return loadingPanel;
     }
     
     private JPanel createSidebar() {
@@ -204,22 +288,34 @@ public class MainFrame extends JFrame {
         JMenuBar menuBar = new JMenuBar();
         
         // File menu
-        JMenu fileMenu = new JMenu("File");
+        fileMenu = new JMenu("File");
+        JMenuItem importStatement = new JMenuItem("Import Bank Statement...");
+        JMenuItem importExpenses = new JMenuItem("Import Expenses...");
         JMenuItem exportCSV = new JMenuItem("Export to CSV");
         JMenuItem exportJSON = new JMenuItem("Export to JSON");
+        JMenuItem exportBinary = new JMenuItem("Export to Binary");
         JMenuItem exit = new JMenuItem("Exit");
         
+        importStatement.addActionListener(e -> importStatement());
+        importExpenses.addActionListener(e -> importExpenses());
         exportCSV.addActionListener(e -> exportData("CSV"));
         exportJSON.addActionListener(e -> exportData("JSON"));
+        exportBinary.addActionListener(e -> exportData("Binary"));
         exit.addActionListener(e -> {
             saveData();
             System.exit(0);
         });
         
+        fileMenu.add(importStatement);
+        fileMenu.add(importExpenses);
+        fileMenu.addSeparator();
         fileMenu.add(exportCSV);
         fileMenu.add(exportJSON);
+        fileMenu.add(exportBinary);
         fileMenu.addSeparator();
         fileMenu.add(exit);
+        // Imports and exports wait for the data to load
+        fileMenu.setEnabled(false);
         
         // View menu
         JMenu viewMenu = new JMenu("View");
@@ -241,21 +337,74 @@ public class MainFrame extends JFrame {
     }
     
     public void showPanel(String panelName) {
-        // Refresh panels before showing
+        if (!loaded) {
+            // Shown once loading finishes
+            pendingPanel = panelName;
+            return;
+        }
+        buildPanel(panelName);
+        
+        // Refresh panels whose data changed since they were last shown
         switch (panelName) {
             case "dashboard":
-                dashboardPanel.refresh();
+                dashboardPanel.refreshIfStale();
                 break;
             case "expenses":
-                expenseListPanel.refresh();
+                expenseListPanel.refreshIfStale();
                 break;
             case "reports":
-                reportsPanel.refresh();
+                reportsPanel.refreshIfStale();
                 break;
         }
         cardLayout.show(mainPanel, panelName);
     }
     
+    // Builds a panel the first time it is shown, so startup only pays for the first one
+    private void buildPanel(String panelName) {
+        JPanel panel;
+        switch (panelName) {
+            case "dashboard":
+                if (dashboardPanel != null) {
+                    return;
+                }
+                panel = dashboardPanel = new DashboardPanel(expenseManager, this);
+                if (isDarkMode) {
+                    dashboardPanel.applyTheme(true);
+                }
+                break;
+            case "expenses":
+                if (expenseListPanel != null) {
+                    return;
+                }
+                panel = expenseListPanel = new ExpenseListPanel(expenseManager, this);
+                if (isDarkMode) {
+                    expenseListPanel.applyTheme(true);
+                }
+                break;
+            case "add":
+                if (addExpensePanel != null) {
+                    return;
+                }
+                panel = addExpensePanel = new AddExpensePanel(expenseManager, this);
+                if (isDarkMode) {
+                    addExpensePanel.applyTheme(true);
+                }
+                break;
+            case "reports":
+                if (reportsPanel != null) {
+                    return;
+                }
+                panel = reportsPanel = new ReportsPanel(expenseManager, this);
+                if (isDarkMode) {
+                    reportsPanel.applyTheme(true);
+                }
+                break;
+            default:
+                return;
+        }
+        mainPanel.add(panel, panelName);
+    }
+    
     public void toggleDarkMode() {
         isDarkMode = !isDarkMode;
         applyTheme();
@@ -265,11 +414,19 @@ public class MainFrame extends JFrame {
         Color bgColor = isDarkMode ? darkBackground : lightBackground;
         Color fgColor = isDarkMode ? darkForeground : lightForeground;
         
-        // Apply to all panels
-        dashboardPanel.applyTheme(isDarkMode);
-        expenseListPanel.applyTheme(isDarkMode);
-        addExpensePanel.applyTheme(isDarkMode);
-        reportsPanel.applyTheme(isDarkMode);
+        // Apply to the panels built so far; the rest pick it up when built
+        if (dashboardPanel != null) {
+            dashboardPanel.applyTheme(isDarkMode);
+        }
+        if (expenseListPanel != null) {
+            expenseListPanel.applyTheme(isDarkMode);
+        }
+        if (addExpensePanel != null) {
+            addExpensePanel.applyTheme(isDarkMode);
+        }
+        if (reportsPanel != null) {
+            reportsPanel.applyTheme(isDarkMode);
+        }
         
         SwingUtilities.updateComponentTreeUI(this);
     }
@@ -278,49 +435,367 @@ public class MainFrame extends JFrame {
         return isDarkMode;
     }
     
-    private void loadData() {
+    @Override
+    public void paint(Graphics g) {
+        super.paint(g);
+        if (firstPaint) {
+            firstPaint = false;
+            logTiming("first paint");
+        }
+    }
+    
+    // Reads the data files on a worker thread; the frame shows progress meanwhile
+    private void startLoading() {
+        SwingWorker<Void, String> loader = new SwingWorker<>() {
+            private IOException backendError;
+            
+            @Override
+            protected Void doInBackground() throws IOException {
+                String storage = System.getProperty(STORAGE_PROPERTY);
+                if ("pagefile".equals(storage) || "json".equals(storage)) {
+                    backendFile = storage.equals("json") ? "expenses.json" : "expenses.db";
+                    publish("Opening " + backendFile);
+                    try {
+                        openBackend(storage);
+                    } catch (IOException e) {
+                        backendError = e;
+                    }
+                }
+                loadData(this::publish);
+                return null;
+            }
+            
+            @Override
+            protected void process(List<String> steps) {
+                loadingStatus.setText(steps.get(steps.size() - 1));
+            }
+            
+            @Override
+            protected void done() {
+                if (backendError != null) {
+                    JOptionPane.showMessageDialog(MainFrame.this,
+                            "Could not open " + backendFile + ", using the data files instead: " + backendError.getMessage(),
+                            "Load Error",
+                            JOptionPane.WARNING_MESSAGE);
+                }
+                try {
+                    get();
+                } catch (ExecutionException e) {
+                    JOptionPane.showMessageDialog(MainFrame.this,
+                            "Could not load data: " + e.getCause().getMessage(),
+                            "Load Error",
+                            JOptionPane.WARNING_MESSAGE);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                finishLoading();
+            }
+        };
+        loader.execute();
+    }
+    
+    private void finishLoading() {
+        // Persist every change made from here on
+        if (backend != null) {
+            backendSync = new BackendSync(backend, e -> showStorageWarning(
+                    "Could not write changes to " + backendFile + ": " + e.getMessage()
+                            + "\nThey are kept and will be retried every few seconds."));
+            expenseManager.addExpenseChangeListener(backendSync);
+            expenseManager.addExpenseChangeListener(this::saveCategoriesOnChange);
+        } else {
+            expenseManager.addExpenseChangeListener(journal);
+            expenseManager.addExpenseChangeListener(autosave);
+        }
+        
+        loaded = true;
+        fileMenu.setEnabled(true);
+        logTiming("data loaded, " + expenseManager.getExpenseCount() + " expenses");
+        showPanel(pendingPanel);
+    }
+    
+    private void logTiming(String step) {
+        if (Boolean.getBoolean(TIMING_PROPERTY)) {
+            System.out.printf("Startup: %s after %d ms%n", step, (System.nanoTime() - startNanos) / 1_000_000);
+        }
+    }
+    
+    private void openBackend(String storage) throws IOException {
+        Path dataDir = fileStorage.getDataDirectory();
+        backend = "json".equals(storage)
+                ? new JsonStorageBackend(dataDir, expenseManager::getCategories)
+                : new PageFileBackend(dataDir.resolve(backendFile), expenseManager::getCategories);
+    }
+    
+    // Runs on the loader thread before any change listener is attached
+    private void loadData(Consumer<String> status) throws IOException {
+        status.accept("Reading categories");
+        var categories = fileStorage.loadCategories();
+        if (!categories.isEmpty()) {
+            expenseManager.setCategories(categories);
+        }
+        status.accept("Reading expenses");
+        if (backend != null && backend.size() > 0) {
+            expenseManager.setExpenses(backend.scanAll());
+            return;
+        }
+        if (fileStorage.hasSegments()) {
+            expenseManager.openSegments(fileStorage, YearMonth.now().minusMonths(EAGER_MONTHS - 1));
+        } else {
+            // Expenses share the manager's Category instances
+            expenseManager.setExpenses(fileStorage.loadExpenses(expenseManager.getCategories()));
+            // First run with segments: split the single data file on the next save
+            if (fileStorage.isSegmented() && expenseManager.getExpenseCount() > 0) {
+                autosave.markDirty();
+            }
+        }
+        // Recover changes made after the last full save and fold them into the next autosave
+        status.accept("Recovering recent changes");
+        if (journal.replay() > 0) {
+            autosave.markDirty();
+        }
+        if (backend != null) {
+            // First run with the page file: copy the data files into it
+            status.accept("Copying expenses into " + backendFile);
+            StorageBackend.Batch batch = new StorageBackend.Batch();
+            for (Expense expense : expenseManager.getSnapshot().asList()) {
+                batch.put(expense);
+            }
+            backend.commit(batch);
+        }
+    }
+    
+    private void saveData() {
+        if (!loaded) {
+            // Nothing can have changed yet, and the loader may still be reading the files
+            return;
+        }
         try {
-            expenseManager.setExpenses(fileStorage.loadExpenses());
-            var categories = fileStorage.loadCategories();
-            if (!categories.isEmpty()) {
-                expenseManager.setCategories(categories);
+            // Only blocks if changes are still waiting for their autosave
+            autosave.shutdown();
+            journal.close();
+            if (backend != null) {
+                try {
+                    // Waits for queued page-file writes
+                    backendSync.shutdown();
+                } finally {
+                    backend.close();
+                }
             }
         } catch (IOException e) {
             JOptionPane.showMessageDialog(this,
-                    "Could not load data: " + e.getMessage(),
-                    "Load Error",
-                    JOptionPane.WARNING_MESSAGE);
+                    "Could not save data: " + e.getMessage(),
+                    "Save Error",
+                    JOptionPane.ERROR_MESSAGE);
         }
     }
     
-    private void saveData() {
+    // Storage threads report write failures through here
+    private void showStorageWarning(String message) {
+        SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this,
+                message,
+                "Save Error",
+                JOptionPane.WARNING_MESSAGE));
+    }
+    
+    // The page file holds expenses only; categories stay in categories.json
+    private void saveCategoriesOnChange(ExpenseChangeEvent event) {
+        if (event.getType() != ExpenseChangeEvent.Type.CATEGORY_ADDED) {
+            return;
+        }
         try {
-            fileStorage.saveExpenses(expenseManager.getAllExpenses());
             fileStorage.saveCategories(expenseManager.getCategories());
+        } catch (IOException e) {
+            System.err.println("Could not save categories: " + e.getMessage());
+        }
+    }
+    
+    private void importStatement() {
+        List<BankMapping> mappings;
+        try {
+            mappings = fileStorage.loadBankMappings();
         } catch (IOException e) {
             JOptionPane.showMessageDialog(this,
-                    "Could not save data: " + e.getMessage(),
-                    "Save Error",
+                    "Could not read bank-mappings.json: " + e.getMessage(),
+                    "Import Error",
                     JOptionPane.ERROR_MESSAGE);
+            return;
         }
+        
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Import Bank Statement");
+        JComboBox<BankMapping> mappingBox = new JComboBox<>(mappings.toArray(new BankMapping[0]));
+        JPanel mappingPanel = new JPanel(new GridLayout(2, 1, 0, 4));
+        mappingPanel.setBorder(BorderFactory.createEmptyBorder(0, 10, 0, 0));
+        mappingPanel.add(new JLabel("Statement layout"));
+        mappingPanel.add(mappingBox);
+        fileChooser.setAccessory(mappingPanel);
+        
+        if (fileChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path file = fileChooser.getSelectedFile().toPath();
+        StatementImporter importer = new StatementImporter(
+                (BankMapping) mappingBox.getSelectedItem(), expenseManager.getCategories());
+        
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        new SwingWorker<StatementImporter.Result, Void>() {
+            @Override
+            protected StatementImporter.Result doInBackground() throws IOException {
+                return importer.importInto(file, expenseManager);
+            }
+            
+            @Override
+            protected void done() {
+                setCursor(Cursor.getDefaultCursor());
+                try {
+                    StatementImporter.Result result = get();
+                    StringBuilder message = new StringBuilder()
+                            .append("Imported ").append(result.getExpenses().size()).append(" expenses from ")
+                            .append(result.getLines()).append(" lines.");
+                    if (result.getDuplicates() > 0) {
+                        message.append("\nLeft out ").append(result.getDuplicates()).append(" expenses that were already stored.");
+                    }
+                    if (result.getSkipped() > 0) {
+                        message.append("\nSkipped ").append(result.getSkipped()).append(" income or unreadable lines.");
+                    }
+                    for (String error : result.getErrors()) {
+                        message.append("\n").append(error);
+                    }
+                    JOptionPane.showMessageDialog(MainFrame.this,
+                            message.toString(),
+                            "Import Complete",
+                            JOptionPane.INFORMATION_MESSAGE);
+                } catch (ExecutionException e) {
+                    JOptionPane.showMessageDialog(MainFrame.this,
+                            "Import failed: " + e.getCause().getMessage(),
+                            "Import Error",
+                            JOptionPane.ERROR_MESSAGE);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }.execute();
+    }
+    
+    // Reads a JSON or binary expenses file, such as one written by Export, and adds what is new
+    private void importExpenses() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Import Expenses");
+        fileChooser.setFileFilter(new FileNameExtensionFilter("Expense files (*.json, *.bin)", "json", "bin"));
+        if (fileChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        String path = fileChooser.getSelectedFile().getAbsolutePath();
+        
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        new SwingWorker<List<Expense>, Void>() {
+            private int read;
+            
+            @Override
+            protected List<Expense> doInBackground() throws IOException {
+                List<Category> categories = expenseManager.getCategories();
+                List<Expense> imported = path.toLowerCase().endsWith(".bin")
+                        ? fileStorage.importFromBinary(path, categories)
+                        : fileStorage.importFromJSON(path, categories);
+                read = imported.size();
+                // Only the months the file touches are read, not every stored segment
+                Set<YearMonth> months = new HashSet<>();
+                for (Expense expense : imported) {
+                    months.add(YearMonth.from(expense.getDate()));
+                }
+                expenseManager.loadMonths(months);
+                // An id already stored may have been edited since the file was written; keep the edit
+                List<Expense> fresh = new ArrayList<>();
+                for (Expense expense : expenseManager.withoutDuplicates(imported, DuplicateIndex.Mode.EXACT)) {
+                    if (!expenseManager.containsExpense(expense.getId())) {
+                        fresh.add(expense);
+                    }
+                }
+                expenseManager.addExpenses(fresh);
+                return fresh;
+            }
+            
+            @Override
+            protected void done() {
+                setCursor(Cursor.getDefaultCursor());
+                try {
+                    int added = get().size();
+                    StringBuilder message = new StringBuilder()
+                            .append("Imported ").append(added).append(" expenses.");
+                    if (read > added) {
+                        message.append("\nLeft out ").append(read - added).append(" expenses that were already stored.");
+                    }
+                    JOptionPane.showMessageDialog(MainFrame.this,
+                            message.toString(),
+                            "Import Complete",
+                            JOptionPane.INFORMATION_MESSAGE);
+                } catch (ExecutionException e) {
+                    JOptionPane.showMessageDialog(MainFrame.this,
+                            "Import failed: " + e.getCause().getMessage(),
+                            "Import Error",
+                            JOptionPane.ERROR_MESSAGE);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }.execute();
     }
     
     private void exportData(String format) {
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setDialogTitle("Export to " + format);
         
+        // CSV export can be narrowed to a date range and a category
+        JComboBox<String> rangeBox = new JComboBox<>(new String[]{"All dates", "This month", "Last 3 months", "This year"});
+        JComboBox<Object> categoryBox = new JComboBox<>();
+        if (format.equals("CSV")) {
+            categoryBox.addItem("All categories");
+            for (Category category : expenseManager.getCategories()) {
+                categoryBox.addItem(category);
+            }
+            JPanel filterPanel = new JPanel(new GridLayout(4, 1, 0, 4));
+            filterPanel.setBorder(BorderFactory.createEmptyBorder(0, 10, 0, 0));
+            filterPanel.add(new JLabel("Dates"));
+            filterPanel.add(rangeBox);
+            filterPanel.add(new JLabel("Category"));
+            filterPanel.add(categoryBox);
+            fileChooser.setAccessory(filterPanel);
+        }
+        
         int result = fileChooser.showSaveDialog(this);
         if (result == JFileChooser.APPROVE_OPTION) {
             String path = fileChooser.getSelectedFile().getAbsolutePath();
-            if (!path.toLowerCase().endsWith("." + format.toLowerCase())) {
-                path += "." + format.toLowerCase();
+            String extension = format.equals("Binary") ? "bin" : format.toLowerCase();
+            if (!path.toLowerCase().endsWith("." + extension)) {
+                path += "." + extension;
+            }
+            
+            if (format.equals("CSV")) {
+                CsvExporter exporter = new CsvExporter();
+                YearMonth month = YearMonth.now();
+                switch (rangeBox.getSelectedIndex()) {
+                    case 1:
+                        exporter.setDateRange(month.atDay(1), month.atEndOfMonth());
+                        break;
+                    case 2:
+                        exporter.setDateRange(month.minusMonths(2).atDay(1), month.atEndOfMonth());
+                        break;
+                    case 3:
+                        exporter.setDateRange(LocalDate.of(month.getYear(), 1, 1), LocalDate.of(month.getYear(), 12, 31));
+                        break;
+                }
+                if (categoryBox.getSelectedItem() instanceof Category) {
+                    exporter.setCategories(List.of((Category) categoryBox.getSelectedItem()));
+                }
+                exportCSV(exporter, Paths.get(path));
+                return;
             }
             
             try {
-                if (format.equals("CSV")) {
-                    fileStorage.exportToCSV(expenseManager.getAllExpenses(), path);
+                if (format.equals("Binary")) {
+                    fileStorage.exportToBinary(expenseManager.getSnapshot().asList(), path);
                 } else {
-                    fileStorage.exportToJSON(expenseManager.getAllExpenses(), path);
+                    fileStorage.exportToJSON(expenseManager.getSnapshot().asList(), path);
                 }
                 JOptionPane.showMessageDialog(this,
                         "Data exported successfully!",
@@ -335,6 +810,61 @@ public class MainFrame extends JFrame {
         }
     }
     
+    // Streams the export on a worker thread with a cancellable progress dialog
+    private void exportCSV(CsvExporter exporter, Path target) {
+        ProgressMonitor monitor = new ProgressMonitor(this, "Exporting expenses...", null, 0, 100);
+        monitor.setMillisToDecideToPopup(250);
+        
+        SwingWorker<Integer, Void> worker = new SwingWorker<>() {
+            @Override
+            protected Integer doInBackground() throws IOException {
+                return exporter.export(expenseManager, target, (scanned, total) -> {
+                    setProgress(total == 0 ? 100 : (int) (scanned * 100L / total));
+                    return !isCancelled();
+                });
+            }
+            
+            @Override
+            protected void done() {
+                monitor.close();
+                if (isCancelled()) {
+                    return;
+                }
+                try {
+                    JOptionPane.showMessageDialog(MainFrame.this,
+                            "Exported " + get() + " expenses successfully!",
+                            "Export Success",
+                            JOptionPane.INFORMATION_MESSAGE);
+                } catch (ExecutionException e) {
+                    JOptionPane.showMessageDialog(MainFrame.this,
+                            "Export failed: " + e.getCause().getMessage(),
+                            "Export Error",
+                            JOptionPane.ERROR_MESSAGE);
+                } catch (InterruptedException | CancellationException e) {
+                    // Cancelled from the progress dialog
+                }
+            }
+        };
+        worker.addPropertyChangeListener(evt -> {
+            if ("progress".equals(evt.getPropertyName())) {
+                monitor.setProgress((Integer) evt.getNewValue());
+            }
+        });
+        
+        // Progress events stop while rows are filtered out, so poll for the cancel button
+        Timer cancelCheck = new Timer(100, null);
+        cancelCheck.addActionListener(e -> {
+            if (monitor.isCanceled()) {
+                worker.cancel(false);
+            }
+            if (worker.isDone()) {
+                cancelCheck.stop();
+            }
+        });
+        cancelCheck.start();
+        worker.execute();
+    }
+    
     private void showAboutDialog() {
         JOptionPane.showMessageDialog(this,
                 "Smart Expense Tracker\nVersion 1.0\n\nA comprehensive expense tracking application",
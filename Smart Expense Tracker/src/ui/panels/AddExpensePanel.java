@@ -1,5 +1,7 @@
 package ui.panels;
 
+import managers.DuplicateIndex;
+import managers.ExpenseChangeEvent;
 import managers.ExpenseManager;
 import models.Expense;
 import models.Category;
@@ -9,6 +11,7 @@ import ui.utils.ModernUI;
 import javax.swing.*;
 import java.awt.*;
 import java.time.LocalDate;
+import java.util.List;
 
 /**
  * Modern panel for adding new expenses
@@ -32,6 +35,13 @@ public class AddExpensePanel extends JPanel {
         setBorder(BorderFactory.createEmptyBorder(30, 30, 30, 30));
         
         initializeUI();
+        
+        // Offer newly added categories without rebuilding the form
+        expenseManager.addExpenseChangeListener(event -> {
+            if (event.getType() == ExpenseChangeEvent.Type.CATEGORY_ADDED) {
+                SwingUtilities.invokeLater(() -> categoryBox.addItem(event.getCategory()));
+            }
+        });
     }
     
     private void initializeUI() {
@@ -283,6 +293,9 @@ public class AddExpensePanel extends JPanel {
             
             // Create expense
             Expense expense = new Expense(description, amount, category, localDate, notes);
+            if (!confirmNotDuplicate(expense)) {
+                return;
+            }
             expenseManager.addExpense(expense);
             
             JOptionPane.showMessageDialog(this,
@@ -301,6 +314,33 @@ public class AddExpensePanel extends JPanel {
         }
     }
     
+    /**
+     * Warns when the expense matches one already stored, by description or
+     * by amount within a day, and asks whether to save it anyway
+     */
+    private boolean confirmNotDuplicate(Expense expense) {
+        List<Expense> matches = expenseManager.findDuplicates(expense, DuplicateIndex.Mode.EXACT);
+        if (matches.isEmpty()) {
+            matches = expenseManager.findDuplicates(expense, DuplicateIndex.Mode.FUZZY);
+        }
+        if (matches.isEmpty()) {
+            return true;
+        }
+        
+        StringBuilder message = new StringBuilder("This looks like an expense you already have:\n");
+        for (Expense match : matches.subList(0, Math.min(3, matches.size()))) {
+            message.append("\n").append(match.getDate()).append("  ")
+                    .append(match.getDescription()).append("  ")
+                    .append(String.format("$%.2f", match.getAmount()));
+        }
+        message.append("\n\nSave it anyway?");
+        return JOptionPane.showConfirmDialog(this,
+                message.toString(),
+                "Possible Duplicate",
+                JOptionPane.YES_NO_OPTION,
+                JOptionPane.WARNING_MESSAGE) == JOptionPane.YES_OPTION;
+    }
+    
     private void clearForm() {
         descriptionField.setText("");
         amountField.setText("");
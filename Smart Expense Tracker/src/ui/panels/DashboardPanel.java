@@ -1,11 +1,18 @@
 package ui.panels;
 
 import java.awt.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import javax.swing.*;
+import managers.ExpenseAggregates;
+import managers.ExpenseChangeEvent;
 import managers.ExpenseManager;
 import models.Category;
 import ui.MainFrame;
+import ui.utils.BackgroundRefresher;
 import ui.utils.ModernUI;
 
 /**
@@ -14,10 +21,18 @@ import ui.utils.ModernUI;
 public class DashboardPanel extends JPanel {
     private ExpenseManager expenseManager;
     private MainFrame mainFrame;
-    private JLabel totalLabel;
-    private JLabel countLabel;
-    private JLabel avgLabel;
+    private JPanel totalCard;
+    private JPanel countCard;
+    private JPanel avgCard;
     private JPanel categoryPanel;
+    private JPanel emptyPanel;
+    // Rows kept between refreshes, keyed by category id, in display order
+    private final Map<String, CategoryRow> categoryRows = new LinkedHashMap<>();
+    private JLabel loadingLabel;
+    private volatile boolean stale = true;
+    // Reads the totals off the EDT; shows them when they arrive
+    private final BackgroundRefresher<DashboardData> refresher =
+            new BackgroundRefresher<>(this::loadData, this::showData, this::showLoading);
     
     public DashboardPanel(ExpenseManager expenseManager, MainFrame mainFrame) {
         this.expenseManager = expenseManager;
@@ -27,6 +42,14 @@ public class DashboardPanel extends JPanel {
         setBackground(ModernUI.BACKGROUND_LIGHT);
         setBorder(BorderFactory.createEmptyBorder(30, 30, 30, 30));
         
+        // Mark dirty on data changes; MainFrame refreshes hidden panels when shown
+        expenseManager.addExpenseChangeListener(event -> {
+            if (event.getType() != ExpenseChangeEvent.Type.CATEGORY_ADDED) {
+                stale = true;
+                SwingUtilities.invokeLater(this::refreshIfShowing);
+            }
+        });
+        
         initializeUI();
     }
     
@@ -47,6 +70,11 @@ public class DashboardPanel extends JPanel {
         titleBox.add(subtitleLabel);
         
         headerPanel.add(titleBox, BorderLayout.WEST);
+        
+        loadingLabel = ModernUI.createModernLabel("Updating…", 13, false);
+        loadingLabel.setForeground(ModernUI.TEXT_SECONDARY_LIGHT);
+        loadingLabel.setVisible(false);
+        headerPanel.add(loadingLabel, BorderLayout.EAST);
         add(headerPanel, BorderLayout.NORTH);
         
         // Content panel
@@ -69,6 +97,8 @@ public class DashboardPanel extends JPanel {
         categoryPanel = new JPanel();
         categoryPanel.setLayout(new BoxLayout(categoryPanel, BoxLayout.Y_AXIS));
         categoryPanel.setBackground(Color.WHITE);
+        emptyPanel = createEmptyPanel();
+        categoryPanel.add(emptyPanel);
         
         JScrollPane scrollPane = new JScrollPane(categoryPanel);
         scrollPane.setBorder(null);
@@ -87,17 +117,10 @@ public class DashboardPanel extends JPanel {
         panel.setBackground(ModernUI.BACKGROUND_LIGHT);
         panel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 120));
         
-        // Total expenses card
-        totalLabel = new JLabel("$0.00");
-        JPanel totalCard = ModernUI.createStatCard("Total Expenses", "$0.00", ModernUI.PRIMARY_COLOR, "💰");
-        
-        // Transaction count card
-        countLabel = new JLabel("0");
-        JPanel countCard = ModernUI.createStatCard("Transactions", "0", ModernUI.SUCCESS_COLOR, "📊");
-        
-        // Average expense card
-        avgLabel = new JLabel("$0.00");
-        JPanel avgCard = ModernUI.createStatCard("Average", "$0.00", ModernUI.ACCENT_COLOR, "📈");
+        // Cards are built once; refresh only changes their values
+        totalCard = ModernUI.createStatCard("Total Expenses", "$0.00", ModernUI.PRIMARY_COLOR, "💰");
+        countCard = ModernUI.createStatCard("Transactions", "0", ModernUI.SUCCESS_COLOR, "📊");
+        avgCard = ModernUI.createStatCard("Average", "$0.00", ModernUI.ACCENT_COLOR, "📈");
         
         panel.add(totalCard);
         panel.add(countCard);
@@ -106,153 +129,225 @@ public class DashboardPanel extends JPanel {
         return panel;
     }
     
+    private JPanel createEmptyPanel() {
+        JPanel emptyPanel = new JPanel();
+        emptyPanel.setLayout(new BoxLayout(emptyPanel, BoxLayout.Y_AXIS));
+        emptyPanel.setBackground(Color.WHITE);
+        emptyPanel.setBorder(BorderFactory.createEmptyBorder(40, 0, 40, 0));
+        
+        JLabel emptyIcon = new JLabel("📝");
+        emptyIcon.setFont(new Font("Segoe UI Emoji", Font.PLAIN, 48));
+        emptyIcon.setAlignmentX(Component.CENTER_ALIGNMENT);
+        
+        JLabel noDataLabel = ModernUI.createModernLabel("No expenses yet", 16, false);
+        noDataLabel.setForeground(ModernUI.TEXT_SECONDARY_LIGHT);
+        noDataLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+        
+        JLabel hintLabel = ModernUI.createModernLabel("Start tracking by adding an expense", 12, false);
+        hintLabel.setForeground(ModernUI.TEXT_SECONDARY_LIGHT);
+        hintLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+        
+        emptyPanel.add(emptyIcon);
+        emptyPanel.add(Box.createVerticalStrut(15));
+        emptyPanel.add(noDataLabel);
+        emptyPanel.add(Box.createVerticalStrut(5));
+        emptyPanel.add(hintLabel);
+        return emptyPanel;
+    }
+    
+    /**
+     * Refreshes only if expenses changed since the last refresh
+     */
+    public void refreshIfStale() {
+        if (stale) {
+            refresh();
+        }
+    }
+    
+    // A change made elsewhere, such as an import finishing, shows up on the open panel right away
+    private void refreshIfShowing() {
+        if (isShowing()) {
+            refreshIfStale();
+        }
+    }
+    
     public void refresh() {
+        stale = false;
+        refresher.request();
+    }
+    
+    // Runs on the refresher's thread; one read, so an import running meanwhile
+    // cannot leave the total out of step with the categories
+    private DashboardData loadData() {
+        ExpenseAggregates totals = expenseManager.getTotals();
+        return new DashboardData(totals.getTotal(), totals.getCount(), totals.getCategoryTotals());
+    }
+    
+    private void showLoading(boolean loading) {
+        loadingLabel.setVisible(loading);
+    }
+    
+    private void showData(DashboardData data) {
         // Update statistics
-        double total = expenseManager.getTotalExpenses();
-        int count = expenseManager.getAllExpenses().size();
+        double total = data.total;
+        int count = data.count;
         double avg = count > 0 ? total / count : 0;
         
-        // Update stat cards by recreating the stats panel
-        Component[] components = getComponents();
-        for (Component comp : components) {
-            if (comp instanceof JPanel) {
-                JPanel panel = (JPanel) comp;
-                if (panel.getLayout() instanceof BoxLayout) {
-                    Component[] innerComps = panel.getComponents();
-                    if (innerComps.length > 0 && innerComps[0] instanceof JPanel) {
-                        JPanel statsPanel = (JPanel) innerComps[0];
-                        if (statsPanel.getLayout() instanceof GridLayout) {
-                            // Remove old stats panel
-                            panel.remove(0);
-                            // Create new one with updated values
-                            JPanel newStatsPanel = new JPanel(new GridLayout(1, 3, 20, 0));
-                            newStatsPanel.setBackground(ModernUI.BACKGROUND_LIGHT);
-                            newStatsPanel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 120));
-                            
-                            newStatsPanel.add(ModernUI.createStatCard("Total Expenses", 
-                                String.format("$%.2f", total), ModernUI.PRIMARY_COLOR, "💰"));
-                            newStatsPanel.add(ModernUI.createStatCard("Transactions", 
-                                String.valueOf(count), ModernUI.SUCCESS_COLOR, "📊"));
-                            newStatsPanel.add(ModernUI.createStatCard("Average", 
-                                String.format("$%.2f", avg), ModernUI.ACCENT_COLOR, "📈"));
-                            
-                            panel.add(newStatsPanel, 0);
-                            break;
-                        }
-                    }
-                }
+        ModernUI.setStatCardValue(totalCard, String.format("$%.2f", total));
+        ModernUI.setStatCardValue(countCard, String.valueOf(count));
+        ModernUI.setStatCardValue(avgCard, String.format("$%.2f", avg));
+        
+        // Update category breakdown: drop rows for categories that are gone,
+        // add rows for new ones and update the rest in place
+        List<Map.Entry<Category, Double>> entries = new ArrayList<>(data.categoryTotals.entrySet());
+        entries.sort((e1, e2) -> Double.compare(e2.getValue(), e1.getValue()));
+        
+        Map<String, Double> current = new LinkedHashMap<>();
+        for (Map.Entry<Category, Double> entry : entries) {
+            current.put(entry.getKey().getId(), entry.getValue());
+        }
+        boolean structureChanged = false;
+        for (Iterator<String> ids = categoryRows.keySet().iterator(); ids.hasNext(); ) {
+            if (!current.containsKey(ids.next())) {
+                ids.remove();
+                structureChanged = true;
             }
         }
         
-        // Update category breakdown
-        categoryPanel.removeAll();
-        Map<Category, Double> categoryExpenses = expenseManager.getExpensesByCategories();
+        List<CategoryRow> ordered = new ArrayList<>(entries.size());
+        for (Map.Entry<Category, Double> entry : entries) {
+            CategoryRow row = categoryRows.get(entry.getKey().getId());
+            if (row == null) {
+                row = new CategoryRow(entry.getKey());
+                categoryRows.put(entry.getKey().getId(), row);
+                structureChanged = true;
+            }
+            row.update(entry.getKey(), entry.getValue(), total);
+            ordered.add(row);
+        }
         
-        if (categoryExpenses.isEmpty()) {
-            JPanel emptyPanel = new JPanel();
-            emptyPanel.setLayout(new BoxLayout(emptyPanel, BoxLayout.Y_AXIS));
-            emptyPanel.setBackground(Color.WHITE);
-            emptyPanel.setBorder(BorderFactory.createEmptyBorder(40, 0, 40, 0));
+        // Re-lay out only when rows came, went or changed places
+        if (structureChanged || !ordered.equals(new ArrayList<>(categoryRows.values()))) {
+            categoryRows.clear();
+            categoryPanel.removeAll();
+            if (ordered.isEmpty()) {
+                categoryPanel.add(emptyPanel);
+            }
+            for (CategoryRow row : ordered) {
+                categoryRows.put(row.categoryId, row);
+                categoryPanel.add(row.panel);
+                categoryPanel.add(row.spacer);
+            }
+            categoryPanel.revalidate();
+            categoryPanel.repaint();
+        }
+    }
+    
+    /**
+     * One category's line in the breakdown, built once and updated in place
+     */
+    private static class CategoryRow {
+        private static final Color ROW_BACKGROUND = new Color(249, 250, 251);
+        
+        private final String categoryId;
+        private final JPanel panel;
+        private final Component spacer = Box.createRigidArea(new Dimension(0, 12));
+        private final JPanel iconPanel;
+        private final JLabel iconLabel;
+        private final JLabel nameLabel;
+        private final JLabel amountLabel;
+        private final JLabel percentLabel;
+        private final JProgressBar progressBar;
+        
+        CategoryRow(Category category) {
+            categoryId = category.getId();
+            panel = new JPanel(new BorderLayout(15, 0));
+            panel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 70));
+            panel.setBackground(ROW_BACKGROUND);
+            panel.setBorder(BorderFactory.createCompoundBorder(
+                new javax.swing.border.LineBorder(new Color(229, 231, 235), 1, true),
+                BorderFactory.createEmptyBorder(15, 20, 15, 20)
+            ));
+            
+            // Icon circle
+            iconPanel = new JPanel();
+            iconPanel.setLayout(new GridBagLayout());
+            iconPanel.setPreferredSize(new Dimension(50, 50));
+            iconPanel.setBorder(BorderFactory.createEmptyBorder(0, 0, 0, 0));
             
-            JLabel emptyIcon = new JLabel("📝");
-            emptyIcon.setFont(new Font("Segoe UI Emoji", Font.PLAIN, 48));
-            emptyIcon.setAlignmentX(Component.CENTER_ALIGNMENT);
+            iconLabel = new JLabel();
+            iconLabel.setFont(new Font("Segoe UI Emoji", Font.PLAIN, 24));
+            iconPanel.add(iconLabel);
             
-            JLabel noDataLabel = ModernUI.createModernLabel("No expenses yet", 16, false);
-            noDataLabel.setForeground(ModernUI.TEXT_SECONDARY_LIGHT);
-            noDataLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+            // Category info
+            JPanel infoPanel = new JPanel();
+            infoPanel.setLayout(new BoxLayout(infoPanel, BoxLayout.Y_AXIS));
+            infoPanel.setBackground(ROW_BACKGROUND);
             
-            JLabel hintLabel = ModernUI.createModernLabel("Start tracking by adding an expense", 12, false);
-            hintLabel.setForeground(ModernUI.TEXT_SECONDARY_LIGHT);
-            hintLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+            nameLabel = ModernUI.createModernLabel("", 15, true);
+            nameLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
             
-            emptyPanel.add(emptyIcon);
-            emptyPanel.add(Box.createVerticalStrut(15));
-            emptyPanel.add(noDataLabel);
-            emptyPanel.add(Box.createVerticalStrut(5));
-            emptyPanel.add(hintLabel);
+            amountLabel = ModernUI.createModernLabel("", 13, false);
+            amountLabel.setForeground(ModernUI.TEXT_SECONDARY_LIGHT);
+            amountLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
             
-            categoryPanel.add(emptyPanel);
-        } else {
-            categoryExpenses.entrySet().stream()
-                    .sorted((e1, e2) -> Double.compare(e2.getValue(), e1.getValue()))
-                    .forEach(entry -> {
-                        JPanel itemPanel = createCategoryItem(entry.getKey(), entry.getValue(), total);
-                        categoryPanel.add(itemPanel);
-                        categoryPanel.add(Box.createRigidArea(new Dimension(0, 12)));
-                    });
+            infoPanel.add(nameLabel);
+            infoPanel.add(Box.createVerticalStrut(3));
+            infoPanel.add(amountLabel);
+            
+            // Percentage panel
+            JPanel rightPanel = new JPanel();
+            rightPanel.setLayout(new BoxLayout(rightPanel, BoxLayout.Y_AXIS));
+            rightPanel.setBackground(ROW_BACKGROUND);
+            
+            percentLabel = ModernUI.createModernLabel("", 16, true);
+            percentLabel.setAlignmentX(Component.RIGHT_ALIGNMENT);
+            
+            // Progress bar
+            progressBar = new JProgressBar(0, 100);
+            progressBar.setStringPainted(false);
+            progressBar.setPreferredSize(new Dimension(100, 6));
+            progressBar.setBackground(new Color(229, 231, 235));
+            progressBar.setBorderPainted(false);
+            
+            rightPanel.add(percentLabel);
+            rightPanel.add(Box.createVerticalStrut(5));
+            rightPanel.add(progressBar);
+            
+            panel.add(iconPanel, BorderLayout.WEST);
+            panel.add(infoPanel, BorderLayout.CENTER);
+            panel.add(rightPanel, BorderLayout.EAST);
         }
         
-        categoryPanel.revalidate();
-        categoryPanel.repaint();
-        revalidate();
-        repaint();
+        // Setters skip repainting when the value is unchanged
+        void update(Category category, double amount, double total) {
+            double percentage = (amount / total) * 100;
+            iconLabel.setText(category.getIcon());
+            nameLabel.setText(category.getName());
+            amountLabel.setText(String.format("$%.2f", amount));
+            percentLabel.setText(String.format("%.1f%%", percentage));
+            progressBar.setValue((int) percentage);
+            if (!category.getColor().equals(iconPanel.getBackground())) {
+                iconPanel.setBackground(category.getColor());
+                percentLabel.setForeground(category.getColor());
+                progressBar.setForeground(category.getColor());
+            }
+        }
     }
     
-    private JPanel createCategoryItem(Category category, double amount, double total) {
-        JPanel panel = new JPanel(new BorderLayout(15, 0));
-        panel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 70));
-        panel.setBackground(new Color(249, 250, 251));
-        panel.setBorder(BorderFactory.createCompoundBorder(
-            new javax.swing.border.LineBorder(new Color(229, 231, 235), 1, true),
-            BorderFactory.createEmptyBorder(15, 20, 15, 20)
-        ));
-        
-        // Icon circle
-        JPanel iconPanel = new JPanel();
-        iconPanel.setLayout(new GridBagLayout());
-        iconPanel.setPreferredSize(new Dimension(50, 50));
-        iconPanel.setBackground(category.getColor());
-        iconPanel.setBorder(BorderFactory.createEmptyBorder(0, 0, 0, 0));
-        
-        JLabel iconLabel = new JLabel(category.getIcon());
-        iconLabel.setFont(new Font("Segoe UI Emoji", Font.PLAIN, 24));
-        iconPanel.add(iconLabel);
-        
-        // Category info
-        JPanel infoPanel = new JPanel();
-        infoPanel.setLayout(new BoxLayout(infoPanel, BoxLayout.Y_AXIS));
-        infoPanel.setBackground(new Color(249, 250, 251));
-        
-        JLabel nameLabel = ModernUI.createModernLabel(category.getName(), 15, true);
-        nameLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
-        
-        JLabel amountLabel = ModernUI.createModernLabel(String.format("$%.2f", amount), 13, false);
-        amountLabel.setForeground(ModernUI.TEXT_SECONDARY_LIGHT);
-        amountLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
-        
-        infoPanel.add(nameLabel);
-        infoPanel.add(Box.createVerticalStrut(3));
-        infoPanel.add(amountLabel);
-        
-        // Percentage panel
-        JPanel rightPanel = new JPanel();
-        rightPanel.setLayout(new BoxLayout(rightPanel, BoxLayout.Y_AXIS));
-        rightPanel.setBackground(new Color(249, 250, 251));
-        
-        double percentage = (amount / total) * 100;
-        JLabel percentLabel = ModernUI.createModernLabel(String.format("%.1f%%", percentage), 16, true);
-        percentLabel.setForeground(category.getColor());
-        percentLabel.setAlignmentX(Component.RIGHT_ALIGNMENT);
-        
-        // Progress bar
-        JProgressBar progressBar = new JProgressBar(0, 100);
-        progressBar.setValue((int) percentage);
-        progressBar.setStringPainted(false);
-        progressBar.setPreferredSize(new Dimension(100, 6));
-        progressBar.setForeground(category.getColor());
-        progressBar.setBackground(new Color(229, 231, 235));
-        progressBar.setBorderPainted(false);
-        
-        rightPanel.add(percentLabel);
-        rightPanel.add(Box.createVerticalStrut(5));
-        rightPanel.add(progressBar);
-        
-        panel.add(iconPanel, BorderLayout.WEST);
-        panel.add(infoPanel, BorderLayout.CENTER);
-        panel.add(rightPanel, BorderLayout.EAST);
-        
-        return panel;
+    /**
+     * Totals read in one background pass
+     */
+    private static class DashboardData {
+        private final double total;
+        private final int count;
+        private final Map<Category, Double> categoryTotals;
+        
+        DashboardData(double total, int count, Map<Category, Double> categoryTotals) {
+            this.total = total;
+            this.count = count;
+            this.categoryTotals = categoryTotals;
+        }
     }
     
     public void applyTheme(boolean isDarkMode) {
@@ -1,17 +1,23 @@
 package ui.panels;
 
+import managers.ExpenseChangeEvent;
 import managers.ExpenseManager;
 import models.Expense;
 import models.Category;
 import ui.MainFrame;
+import ui.utils.BackgroundRefresher;
 import ui.utils.ModernUI;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.border.Border;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.JTableHeader;
 import java.awt.*;
-import java.time.format.DateTimeFormatter;
+import java.awt.event.ActionListener;
+import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.List;
 
 /**
@@ -21,8 +27,23 @@ public class ExpenseListPanel extends JPanel {
     private ExpenseManager expenseManager;
     private MainFrame mainFrame;
     private JTable expenseTable;
-    private DefaultTableModel tableModel;
-    private DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("MMM dd, yyyy");
+    // Reads the manager's newest-first search results; table row i is element i
+    private ExpenseTableModel tableModel;
+    private volatile boolean stale = true;
+    
+    // Filters, applied together on every refresh
+    private JTextField searchField;
+    private JComboBox<String> rangeBox;
+    private JComboBox<Object> categoryBox;
+    private JLabel countLabel;
+    // Coalesces keystrokes so a fast typist triggers one search, not one per key
+    private Timer searchTimer;
+    // Filters read on the EDT for the search running on the refresher's thread
+    private volatile SearchQuery query;
+    // Runs once the next search result is in the table, e.g. to restore a selection
+    private Runnable afterRefresh;
+    private final BackgroundRefresher<List<Expense>> refresher =
+            new BackgroundRefresher<>(this::loadRows, this::showRows, this::showLoading);
     
     public ExpenseListPanel(ExpenseManager expenseManager, MainFrame mainFrame) {
         this.expenseManager = expenseManager;
@@ -32,6 +53,16 @@ public class ExpenseListPanel extends JPanel {
         setBackground(ModernUI.BG_COLOR);
         setBorder(BorderFactory.createEmptyBorder(25, 25, 25, 25));
         
+        // Mark dirty on data changes; MainFrame refreshes hidden panels when shown
+        expenseManager.addExpenseChangeListener(event -> {
+            if (event.getType() != ExpenseChangeEvent.Type.CATEGORY_ADDED) {
+                stale = true;
+                SwingUtilities.invokeLater(this::refreshIfShowing);
+            } else {
+                SwingUtilities.invokeLater(this::loadCategories);
+            }
+        });
+        
         initializeUI();
     }
     
@@ -68,20 +99,61 @@ public class ExpenseListPanel extends JPanel {
         actionPanel.add(deleteButton);
         
         topPanel.add(actionPanel, BorderLayout.EAST);
-        add(topPanel, BorderLayout.NORTH);
+        
+        // Search and filter bar
+        JPanel filterPanel = new JPanel(new BorderLayout(10, 0));
+        filterPanel.setOpaque(false);
+        
+        searchField = ModernUI.createModernTextField("Search descriptions and notes");
+        searchTimer = new Timer(150, e -> refresh());
+        searchTimer.setRepeats(false);
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                searchTimer.restart();
+            }
+            
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                searchTimer.restart();
+            }
+            
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                searchTimer.restart();
+            }
+        });
+        filterPanel.add(searchField, BorderLayout.CENTER);
+        
+        JPanel comboPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 0));
+        comboPanel.setOpaque(false);
+        rangeBox = new JComboBox<>(new String[]{"All dates", "This month", "Last 3 months", "This year"});
+        rangeBox.setFont(new Font("SF Pro Text", Font.PLAIN, 13));
+        rangeBox.addActionListener(e -> refresh());
+        categoryBox = new JComboBox<>();
+        categoryBox.setFont(new Font("SF Pro Text", Font.PLAIN, 13));
+        loadCategories();
+        categoryBox.addActionListener(e -> refresh());
+        countLabel = new JLabel();
+        countLabel.setFont(new Font("SF Pro Text", Font.PLAIN, 13));
+        countLabel.setForeground(ModernUI.TEXT_SECONDARY);
+        comboPanel.add(rangeBox);
+        comboPanel.add(categoryBox);
+        comboPanel.add(countLabel);
+        filterPanel.add(comboPanel, BorderLayout.EAST);
+        
+        JPanel northPanel = new JPanel(new BorderLayout(0, 15));
+        northPanel.setOpaque(false);
+        northPanel.add(topPanel, BorderLayout.NORTH);
+        northPanel.add(filterPanel, BorderLayout.SOUTH);
+        add(northPanel, BorderLayout.NORTH);
         
         // Table container with card style
         JPanel tableContainer = ModernUI.createCard();
         tableContainer.setLayout(new BorderLayout());
         
         // Table
-        String[] columnNames = {"📅 Date", "📝 Description", "🏷️ Category", "💰 Amount", "📄 Notes"};
-        tableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        tableModel = new ExpenseTableModel();
         
         expenseTable = new JTable(tableModel);
         expenseTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
@@ -103,7 +175,9 @@ public class ExpenseListPanel extends JPanel {
         header.setBorder(BorderFactory.createMatteBorder(0, 0, 2, 0, ModernUI.BORDER_COLOR));
         header.setPreferredSize(new Dimension(header.getPreferredSize().width, 40));
         
-        // Cell renderer for alternating rows
+        // Cell renderer for alternating rows; runs for every visible cell on every paint
+        Color stripeColor = new Color(248, 249, 250);
+        Border cellBorder = BorderFactory.createEmptyBorder(5, 10, 5, 10);
         DefaultTableCellRenderer centerRenderer = new DefaultTableCellRenderer() {
             @Override
             public Component getTableCellRendererComponent(JTable table, Object value,
@@ -111,10 +185,10 @@ public class ExpenseListPanel extends JPanel {
                 Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
                 
                 if (!isSelected) {
-                    c.setBackground(row % 2 == 0 ? Color.WHITE : new Color(248, 249, 250));
+                    c.setBackground(row % 2 == 0 ? Color.WHITE : stripeColor);
                 }
                 
-                setBorder(BorderFactory.createEmptyBorder(5, 10, 5, 10));
+                setBorder(cellBorder);
                 
                 return c;
             }
@@ -131,24 +205,119 @@ public class ExpenseListPanel extends JPanel {
         
         add(tableContainer, BorderLayout.CENTER);
         
-        refresh();
+        // Filled in by refreshIfStale() when first shown, so startup does not touch older months
+    }
+    
+    /**
+     * Refreshes only if expenses changed since the last refresh
+     */
+    public void refreshIfStale() {
+        if (stale) {
+            refresh();
+        }
+    }
+    
+    // A change made elsewhere, such as an import finishing, shows up on the open panel right away
+    private void refreshIfShowing() {
+        if (isShowing()) {
+            refreshIfStale();
+        }
     }
     
     public void refresh() {
-        tableModel.setRowCount(0);
-        
-        List<Expense> expenses = expenseManager.getAllExpenses();
-        expenses.sort((e1, e2) -> e2.getDate().compareTo(e1.getDate()));
-        
-        for (Expense expense : expenses) {
-            Object[] row = {
-                    expense.getDate().format(dateFormatter),
-                    expense.getDescription(),
-                    expense.getCategory().getName(),
-                    String.format("$%.2f", expense.getAmount()),
-                    expense.getNotes()
-            };
-            tableModel.addRow(row);
+        stale = false;
+        searchTimer.stop();
+        
+        LocalDate from = null;
+        LocalDate to = null;
+        YearMonth month = YearMonth.now();
+        switch (rangeBox.getSelectedIndex()) {
+            case 1:
+                from = month.atDay(1);
+                to = month.atEndOfMonth();
+                break;
+            case 2:
+                from = month.minusMonths(2).atDay(1);
+                to = month.atEndOfMonth();
+                break;
+            case 3:
+                from = LocalDate.of(month.getYear(), 1, 1);
+                to = LocalDate.of(month.getYear(), 12, 31);
+                break;
+        }
+        Object category = categoryBox.getSelectedItem();
+        List<Category> categories = category instanceof Category ? List.of((Category) category) : null;
+        
+        query = new SearchQuery(searchField.getText(), from, to, categories);
+        refresher.request();
+    }
+    
+    // Runs on the refresher's thread, so a search over older months does not freeze the table
+    private List<Expense> loadRows() {
+        SearchQuery current = query;
+        return expenseManager.search(current.text, current.from, current.to, current.categories);
+    }
+    
+    private void showLoading(boolean loading) {
+        if (loading) {
+            countLabel.setText("Searching…");
+        }
+    }
+    
+    private void showRows(List<Expense> expenses) {
+        // No per-row work: cells are formatted as they scroll into view
+        tableModel.setRows(expenses);
+        int rows = tableModel.getRowCount();
+        countLabel.setText(String.format("%,d %s", rows, rows == 1 ? "expense" : "expenses"));
+        if (afterRefresh != null) {
+            Runnable action = afterRefresh;
+            afterRefresh = null;
+            action.run();
+        }
+    }
+    
+    private static class SearchQuery {
+        private final String text;
+        private final LocalDate from;
+        private final LocalDate to;
+        private final List<Category> categories;
+        
+        SearchQuery(String text, LocalDate from, LocalDate to, List<Category> categories) {
+            this.text = text;
+            this.from = from;
+            this.to = to;
+            this.categories = categories;
+        }
+    }
+    
+    // Refills the category filter, keeping the current choice
+    private void loadCategories() {
+        Object selected = categoryBox.getSelectedItem();
+        ActionListener[] listeners = categoryBox.getActionListeners();
+        for (ActionListener listener : listeners) {
+            categoryBox.removeActionListener(listener);
+        }
+        categoryBox.removeAllItems();
+        categoryBox.addItem("All categories");
+        for (Category category : expenseManager.getCategories()) {
+            categoryBox.addItem(category);
+        }
+        if (selected != null) {
+            categoryBox.setSelectedItem(selected);
+        }
+        for (ActionListener listener : listeners) {
+            categoryBox.addActionListener(listener);
+        }
+    }
+    
+    /**
+     * Selects the expense's row, if shown, and scrolls it into view
+     */
+    private void selectExpense(Expense expense) {
+        int row = tableModel.findRow(expense.getId(), expense.getDate());
+        if (row >= 0) {
+            expenseTable.setRowSelectionInterval(row, row);
+            expenseTable.scrollRectToVisible(expenseTable.getCellRect(row, 0, true));
         }
     }
     
@@ -162,9 +331,7 @@ public class ExpenseListPanel extends JPanel {
             return;
         }
         
-        List<Expense> expenses = expenseManager.getAllExpenses();
-        expenses.sort((e1, e2) -> e2.getDate().compareTo(e1.getDate()));
-        Expense expense = expenses.get(selectedRow);
+        Expense expense = tableModel.getExpenseAt(selectedRow);
         
         // Create modern edit dialog
         JDialog dialog = new JDialog((Frame) SwingUtilities.getWindowAncestor(this), "Edit Expense", true);
@@ -196,9 +363,9 @@ public class ExpenseListPanel extends JPanel {
         descField.setText(expense.getDescription());
         JTextField amountField = ModernUI.createModernTextField("Amount");
         amountField.setText(String.valueOf(expense.getAmount()));
-        JComboBox<Category> categoryBox = new JComboBox<>(expenseManager.getCategories().toArray(new Category[0]));
-        categoryBox.setSelectedItem(expense.getCategory());
-        categoryBox.setFont(new Font("SF Pro Text", Font.PLAIN, 14));
+        JComboBox<Category> editCategoryBox = new JComboBox<>(expenseManager.getCategories().toArray(new Category[0]));
+        editCategoryBox.setSelectedItem(expense.getCategory());
+        editCategoryBox.setFont(new Font("SF Pro Text", Font.PLAIN, 14));
         JTextField notesField = ModernUI.createModernTextField("Notes");
         notesField.setText(expense.getNotes());
         
@@ -216,7 +383,7 @@ public class ExpenseListPanel extends JPanel {
         gbc.gridy = 4;
         formPanel.add(createFieldLabel("Category"), gbc);
         gbc.gridy = 5;
-        formPanel.add(categoryBox, gbc);
+        formPanel.add(editCategoryBox, gbc);
         
         gbc.gridy = 6;
         formPanel.add(createFieldLabel("Notes"), gbc);
@@ -236,7 +403,7 @@ public class ExpenseListPanel extends JPanel {
             try {
                 String description = descField.getText().trim();
                 double amount = Double.parseDouble(amountField.getText().trim());
-                Category category = (Category) categoryBox.getSelectedItem();
+                Category category = (Category) editCategoryBox.getSelectedItem();
                 String notes = notesField.getText().trim();
                 
                 if (description.isEmpty()) {
@@ -254,6 +421,7 @@ public class ExpenseListPanel extends JPanel {
                 );
                 
                 expenseManager.updateExpense(expense.getId(), updatedExpense);
+                afterRefresh = () -> selectExpense(updatedExpense);
                 refresh();
                 dialog.dispose();
                 
@@ -298,11 +466,14 @@ public class ExpenseListPanel extends JPanel {
                 JOptionPane.YES_NO_OPTION);
         
         if (confirm == JOptionPane.YES_OPTION) {
-            List<Expense> expenses = expenseManager.getAllExpenses();
-            expenses.sort((e1, e2) -> e2.getDate().compareTo(e1.getDate()));
-            Expense expense = expenses.get(selectedRow);
-            
-            expenseManager.deleteExpense(expense.getId());
+            expenseManager.deleteExpense(tableModel.getIdAt(selectedRow));
+            // Keep the selection where it was, now on the next expense
+            afterRefresh = () -> {
+                int next = Math.min(selectedRow, tableModel.getRowCount() - 1);
+                if (next >= 0) {
+                    expenseTable.setRowSelectionInterval(next, next);
+                }
+            };
             refresh();
             
             JOptionPane.showMessageDialog(this, "Expense deleted successfully!");
@@ -0,0 +1,104 @@
+package ui.panels;
+
+import models.Expense;
+
+import javax.swing.table.AbstractTableModel;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Read-only table model over a list of expenses sorted newest first.
+ *
+ * Rows are not copied: the model keeps the list it is given and formats a
+ * cell only when the table asks for it, which is only for visible rows.
+ */
+public class ExpenseTableModel extends AbstractTableModel {
+    private static final String[] COLUMN_NAMES = {"📅 Date", "📝 Description", "🏷️ Category", "💰 Amount", "📄 Notes"};
+    
+    private final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("MMM dd, yyyy");
+    private List<Expense> rows = List.of();
+    
+    /**
+     * Replaces the rows; the list must be sorted newest first and not change afterwards
+     */
+    public void setRows(List<Expense> rows) {
+        this.rows = rows;
+        fireTableDataChanged();
+    }
+    
+    public List<Expense> getRows() {
+        return rows;
+    }
+    
+    public Expense getExpenseAt(int row) {
+        return rows.get(row);
+    }
+    
+    public String getIdAt(int row) {
+        return rows.get(row).getId();
+    }
+    
+    /**
+     * Row showing the expense with this id and date, or -1. Binary search
+     * on the date, then a scan of that day's rows.
+     */
+    public int findRow(String id, LocalDate date) {
+        int low = 0;
+        int high = rows.size();
+        // First row dated on or before the date
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (rows.get(mid).getDate().isAfter(date)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        for (int i = low; i < rows.size() && rows.get(i).getDate().equals(date); i++) {
+            if (rows.get(i).getId().equals(id)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+    
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+    
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+    
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return String.class;
+    }
+    
+    @Override
+    public Object getValueAt(int row, int column) {
+        Expense expense = rows.get(row);
+        switch (column) {
+            case 0:
+                return expense.getDate().format(dateFormatter);
+            case 1:
+                return expense.getDescription();
+            case 2:
+                return expense.getCategory().getName();
+            case 3:
+                return String.format("$%.2f", expense.getAmount());
+            case 4:
+                return expense.getNotes();
+            default:
+                return null;
+        }
+    }
+}
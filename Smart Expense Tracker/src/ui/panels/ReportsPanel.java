@@ -1,14 +1,20 @@
 package ui.panels;
 
+import managers.ExpenseAggregates;
+import managers.ExpenseChangeEvent;
 import managers.ExpenseManager;
 import models.Category;
+import reports.ChartService;
+import reports.ChartService.ChartType;
 import reports.ReportGenerator;
 import ui.MainFrame;
+import ui.utils.BackgroundRefresher;
 import ui.utils.ModernUI;
 
 import javax.swing.*;
 import java.awt.*;
 import java.time.YearMonth;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -20,6 +26,15 @@ public class ReportsPanel extends JPanel {
     private JPanel chartPanel;
     private JComboBox<String> chartTypeBox;
     private JTextArea summaryArea;
+    private JLabel loadingLabel;
+    private JPanel emptyPanel;
+    // Owns the live charts; refreshes and theme changes update them in place
+    private final ChartService chartService = new ChartService();
+    private volatile boolean stale = true;
+    // Latest background results; switching charts redraws from these without recomputing
+    private ReportData data;
+    private final BackgroundRefresher<ReportData> refresher =
+            new BackgroundRefresher<>(this::loadData, this::showData, this::showLoading);
     
     public ReportsPanel(ExpenseManager expenseManager, MainFrame mainFrame) {
         this.expenseManager = expenseManager;
@@ -29,6 +44,14 @@ public class ReportsPanel extends JPanel {
         setBackground(ModernUI.BG_COLOR);
         setBorder(BorderFactory.createEmptyBorder(25, 25, 25, 25));
         
+        // Mark dirty on data changes; MainFrame refreshes hidden panels when shown
+        expenseManager.addExpenseChangeListener(event -> {
+            if (event.getType() != ExpenseChangeEvent.Type.CATEGORY_ADDED) {
+                stale = true;
+                SwingUtilities.invokeLater(this::refreshIfShowing);
+            }
+        });
+        
         initializeUI();
     }
     
@@ -47,6 +70,12 @@ public class ReportsPanel extends JPanel {
         JPanel controlPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 0));
         controlPanel.setOpaque(false);
         
+        loadingLabel = new JLabel("Updating…");
+        loadingLabel.setFont(new Font("SF Pro Text", Font.PLAIN, 13));
+        loadingLabel.setForeground(ModernUI.TEXT_SECONDARY);
+        loadingLabel.setVisible(false);
+        controlPanel.add(loadingLabel);
+        
         JLabel chartLabel = new JLabel("Chart Type:");
         chartLabel.setFont(new Font("SF Pro Text", Font.PLAIN, 13));
         chartLabel.setForeground(ModernUI.TEXT_SECONDARY);
@@ -111,75 +140,137 @@ public class ReportsPanel extends JPanel {
         
         add(splitPane, BorderLayout.CENTER);
         
-        refresh();
+        // Filled in by refreshIfStale() when first shown, so startup does not touch older months
+    }
+    
+    /**
+     * Refreshes only if expenses changed since the last refresh
+     */
+    public void refreshIfStale() {
+        if (stale) {
+            refresh();
+        }
+    }
+    
+    // A change made elsewhere, such as an import finishing, shows up on the open panel right away
+    private void refreshIfShowing() {
+        if (isShowing()) {
+            refreshIfStale();
+        }
     }
     
     public void refresh() {
+        stale = false;
+        refresher.request();
+    }
+    
+    // Runs on the refresher's thread: every chart's data plus the summary text,
+    // all from the running totals so older months stay on disk
+    private ReportData loadData() {
+        ExpenseAggregates totals = expenseManager.getTotals();
+        Map<YearMonth, Double> lastSixMonths = new LinkedHashMap<>();
+        YearMonth currentMonth = YearMonth.now();
+        for (int i = 5; i >= 0; i--) {
+            YearMonth month = currentMonth.minusMonths(i);
+            lastSixMonths.put(month, totals.getMonthTotals().getOrDefault(month, 0.0));
+        }
+        return new ReportData(totals.getCount(),
+                totals.getCategoryTotals(),
+                lastSixMonths,
+                ReportGenerator.generateSummaryReport(totals));
+    }
+    
+    private void showLoading(boolean loading) {
+        loadingLabel.setVisible(loading);
+    }
+    
+    private void showData(ReportData data) {
+        this.data = data;
+        chartService.setCategoryTotals(data.categoryTotals);
+        chartService.setMonthTotals(data.monthTotals);
         updateChart();
         updateSummary();
     }
     
     private void updateChart() {
-        chartPanel.removeAll();
+        if (data == null) {
+            // First results not in yet
+            return;
+        }
         
-        if (expenseManager.getAllExpenses().isEmpty()) {
-            // Empty state
-            JPanel emptyPanel = new JPanel(new GridBagLayout());
-            emptyPanel.setOpaque(false);
-            
-            JLabel emptyLabel = new JLabel("<html><div style='text-align: center;'>" +
-                    "<div style='font-size: 48px; margin-bottom: 10px;'>📊</div>" +
-                    "<div style='font-size: 16px; color: #6c757d;'>No data available</div>" +
-                    "<div style='font-size: 13px; color: #adb5bd;'>Add some expenses to see charts</div>" +
-                    "</div></html>");
-            emptyLabel.setHorizontalAlignment(SwingConstants.CENTER);
-            
-            emptyPanel.add(emptyLabel);
-            chartPanel.add(emptyPanel, BorderLayout.CENTER);
+        Component chart;
+        if (data.count == 0 || (selectedChartType() == ChartType.CATEGORY_PIE && data.categoryTotals.isEmpty())) {
+            chart = getEmptyPanel();
         } else {
-            String selectedChart = (String) chartTypeBox.getSelectedItem();
-            
             try {
-                if (selectedChart.contains("Pie")) {
-                    Map<Category, Double> categoryExpenses = expenseManager.getExpensesByCategories();
-                    if (!categoryExpenses.isEmpty()) {
-                        chartPanel.add(ReportGenerator.createCategoryPieChart(
-                                categoryExpenses,
-                                mainFrame.isDarkMode()
-                        ), BorderLayout.CENTER);
-                    }
-                } else if (selectedChart.contains("Bar")) {
-                    Map<YearMonth, Double> monthlyExpenses = expenseManager.getMonthlyExpenses(6);
-                    chartPanel.add(ReportGenerator.createMonthlyBarChart(
-                            monthlyExpenses,
-                            mainFrame.isDarkMode()
-                    ), BorderLayout.CENTER);
-                } else if (selectedChart.contains("Trend")) {
-                    Map<YearMonth, Double> trendData = expenseManager.getMonthlyExpenses(6);
-                    chartPanel.add(ReportGenerator.createTrendLineChart(
-                            trendData,
-                            mainFrame.isDarkMode()
-                    ), BorderLayout.CENTER);
-                }
+                chart = chartService.getChartPanel(selectedChartType());
             } catch (Exception e) {
                 JLabel errorLabel = new JLabel("⚠️ Error generating chart: " + e.getMessage());
                 errorLabel.setHorizontalAlignment(SwingConstants.CENTER);
                 errorLabel.setForeground(ModernUI.DANGER_COLOR);
-                chartPanel.add(errorLabel, BorderLayout.CENTER);
+                chart = errorLabel;
             }
         }
         
+        // The charts repaint themselves when their data changes; only swap when switching
+        if (chartPanel.getComponentCount() == 1 && chartPanel.getComponent(0) == chart) {
+            return;
+        }
+        chartPanel.removeAll();
+        chartPanel.add(chart, BorderLayout.CENTER);
         chartPanel.revalidate();
         chartPanel.repaint();
     }
     
+    private ChartType selectedChartType() {
+        switch (chartTypeBox.getSelectedIndex()) {
+            case 1:
+                return ChartType.MONTHLY_BAR;
+            case 2:
+                return ChartType.TREND_LINE;
+            default:
+                return ChartType.CATEGORY_PIE;
+        }
+    }
+    
+    private JPanel getEmptyPanel() {
+        if (emptyPanel == null) {
+            emptyPanel = new JPanel(new GridBagLayout());
+            emptyPanel.setOpaque(false);
+            
+            JLabel emptyLabel = new JLabel("<html><div style='text-align: center;'>" +
+                    "<div style='font-size: 48px; margin-bottom: 10px;'>📊</div>" +
+                    "<div style='font-size: 16px; color: #6c757d;'>No data available</div>" +
+                    "<div style='font-size: 13px; color: #adb5bd;'>Add some expenses to see charts</div>" +
+                    "</div></html>");
+            emptyLabel.setHorizontalAlignment(SwingConstants.CENTER);
+            
+            emptyPanel.add(emptyLabel);
+        }
+        return emptyPanel;
+    }
+    
     private void updateSummary() {
-        Map<Category, Double> categoryExpenses = expenseManager.getExpensesByCategories();
-        String summary = ReportGenerator.generateSummaryReport(
-                expenseManager.getAllExpenses(),
-                categoryExpenses
-        );
-        summaryArea.setText(summary);
+        summaryArea.setText(data.summary);
+    }
+    
+    /**
+     * Chart data and summary read in one background pass
+     */
+    private static class ReportData {
+        private final int count;
+        private final Map<Category, Double> categoryTotals;
+        // Last six months, for the bar and trend charts
+        private final Map<YearMonth, Double> monthTotals;
+        private final String summary;
+        
+        ReportData(int count, Map<Category, Double> categoryTotals,
+                   Map<YearMonth, Double> monthTotals, String summary) {
+            this.count = count;
+            this.categoryTotals = categoryTotals;
+            this.monthTotals = monthTotals;
+            this.summary = summary;
+        }
     }
     
     public void applyTheme(boolean isDarkMode) {
@@ -194,6 +285,6 @@ public class ReportsPanel extends JPanel {
             summaryArea.setForeground(fgColor);
         }
         
-        updateChart();
+        chartService.setDarkMode(isDarkMode);
     }
 }
@@ -0,0 +1,107 @@
+package ui.utils;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import javax.swing.*;
+
+/**
+ * Runs a panel's data computation off the EDT and hands the result back to it.
+ *
+ * At most one computation per refresher is queued or running. A request
+ * that arrives while one is still queued replaces it; one that arrives while
+ * it is running marks it superseded, so its result is dropped and a single
+ * fresh run starts when it finishes. All methods are called on the EDT.
+ */
+public class BackgroundRefresher<T> {
+    // Shared by all panels
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "panel-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    // Quick refreshes finish before the loading state would show, so they do not flicker
+    private static final int LOADING_DELAY_MILLIS = 150;
+    
+    private final Supplier<T> compute;
+    private final Consumer<T> publish;
+    private final Timer loadingTimer;
+    private final Consumer<Boolean> loadingState;
+    private SwingWorker<T, Void> current;
+    private boolean superseded;
+    private boolean loadingShown;
+    
+    /**
+     * @param compute reads the data; runs on a background thread
+     * @param publish shows the result; runs on the EDT
+     * @param loadingState shows or hides the loading state; runs on the EDT
+     */
+    public BackgroundRefresher(Supplier<T> compute, Consumer<T> publish, Consumer<Boolean> loadingState) {
+        this.compute = compute;
+        this.publish = publish;
+        this.loadingState = loadingState;
+        this.loadingTimer = new Timer(LOADING_DELAY_MILLIS, e -> {
+            loadingShown = true;
+            loadingState.accept(true);
+        });
+        this.loadingTimer.setRepeats(false);
+    }
+    
+    /**
+     * Schedules a refresh, replacing or superseding any unfinished one
+     */
+    public void request() {
+        if (current != null) {
+            // Still queued: cancel it, the new run reads the same data anyway.
+            // Already running: let it finish, drop its result and run again.
+            if (current.getState() != SwingWorker.StateValue.PENDING || !current.cancel(false)) {
+                superseded = true;
+                return;
+            }
+        }
+        start();
+    }
+    
+    private void start() {
+        superseded = false;
+        if (!loadingShown && !loadingTimer.isRunning()) {
+            loadingTimer.start();
+        }
+        SwingWorker<T, Void> worker = new SwingWorker<>() {
+            @Override
+            protected T doInBackground() {
+                return compute.get();
+            }
+    
+            @Override
+            protected void done() {
+                // A worker cancelled while queued is being replaced by request()
+                if (isCancelled() || current != this) {
+                    return;
+                }
+                current = null;
+                if (superseded) {
+                    start();
+                    return;
+                }
+                loadingTimer.stop();
+                if (loadingShown) {
+                    loadingShown = false;
+                    loadingState.accept(false);
+                }
+                try {
+                    publish.accept(get());
+                } catch (ExecutionException e) {
+                    System.err.println("Error refreshing panel: " + e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        current = worker;
+        EXECUTOR.execute(worker);
+    }
+}
@@ -37,6 +37,20 @@ public class ModernUI {
     public static final Color TEXT_PRIMARY_DARK = new Color(243, 244, 246);
     public static final Color TEXT_SECONDARY_DARK = new Color(156, 163, 175);
     
+    // Button backgrounds, pre-rendered per colour and reused at every size
+    private static final BasicStroke BUTTON_OUTLINE = new BasicStroke(2);
+    private static final RenderCache BUTTON_FILL = new RenderCache(10, true,
+            (g2, color, width, height) -> {
+                g2.setColor(color);
+                g2.fillRoundRect(0, 0, width, height, 10, 10);
+            });
+    private static final RenderCache BUTTON_BORDER = new RenderCache(10, false,
+            (g2, color, width, height) -> {
+                g2.setColor(color);
+                g2.setStroke(BUTTON_OUTLINE);
+                g2.drawRoundRect(1, 1, width - 3, height - 3, 10, 10);
+            });
+    
     /**
      * Creates a modern styled button (2-param version)
      */
@@ -69,36 +83,25 @@ public class ModernUI {
             button.setOpaque(true);
         }
         
-        // Rounded corners
+        // Rounded corners; state colours are made once per button, not per paint
+        Color pressedColor = filled ? bgColor.darker() : new Color(bgColor.getRed(), bgColor.getGreen(), bgColor.getBlue(), 40);
+        Color rolloverColor = filled ? bgColor.brighter() : new Color(bgColor.getRed(), bgColor.getGreen(), bgColor.getBlue(), 20);
         button.setUI(new javax.swing.plaf.basic.BasicButtonUI() {
             @Override
             public void paint(Graphics g, JComponent c) {
-                Graphics2D g2 = (Graphics2D) g.create();
-                g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-                
-                if (filled) {
-                    if (button.getModel().isPressed()) {
-                        g2.setColor(bgColor.darker());
-                    } else if (button.getModel().isRollover()) {
-                        g2.setColor(bgColor.brighter());
-                    } else {
-                        g2.setColor(bgColor);
-                    }
-                    g2.fillRoundRect(0, 0, c.getWidth(), c.getHeight(), 10, 10);
-                } else {
-                    if (button.getModel().isPressed()) {
-                        g2.setColor(new Color(bgColor.getRed(), bgColor.getGreen(), bgColor.getBlue(), 40));
-                        g2.fillRoundRect(0, 0, c.getWidth(), c.getHeight(), 10, 10);
-                    } else if (button.getModel().isRollover()) {
-                        g2.setColor(new Color(bgColor.getRed(), bgColor.getGreen(), bgColor.getBlue(), 20));
-                        g2.fillRoundRect(0, 0, c.getWidth(), c.getHeight(), 10, 10);
-                    }
-                    g2.setColor(bgColor);
-                    g2.setStroke(new BasicStroke(2));
-                    g2.drawRoundRect(1, 1, c.getWidth() - 3, c.getHeight() - 3, 10, 10);
+                Color fill = filled ? bgColor : null;
+                if (button.getModel().isPressed()) {
+                    fill = pressedColor;
+                } else if (button.getModel().isRollover()) {
+                    fill = rolloverColor;
+                }
+                if (fill != null) {
+                    BUTTON_FILL.paint(g, fill, 0, 0, c.getWidth(), c.getHeight());
+                }
+                if (!filled) {
+                    BUTTON_BORDER.paint(g, bgColor, 0, 0, c.getWidth(), c.getHeight());
                 }
                 
-                g2.dispose();
                 super.paint(g, c);
             }
         });
@@ -177,6 +180,9 @@ public class ModernUI {
         return label;
     }
     
+    // Client property holding a stat card's value label
+    private static final String STAT_VALUE_KEY = "ModernUI.statValue";
+    
     /**
      * Creates a stat card for dashboard
      */
@@ -212,30 +218,43 @@ public class ModernUI {
         
         card.add(iconLabel, BorderLayout.WEST);
         card.add(content, BorderLayout.CENTER);
+        card.putClientProperty(STAT_VALUE_KEY, valueLabel);
         
         return card;
     }
     
+    /**
+     * Changes the value shown by a card from createStatCard
+     */
+    public static void setStatCardValue(JPanel card, String value) {
+        ((JLabel) card.getClientProperty(STAT_VALUE_KEY)).setText(value);
+    }
+    
     /**
      * Shadow border for cards
      */
     static class ShadowBorder extends AbstractBorder {
         private static final Color SHADOW_COLOR = new Color(0, 0, 0, 20);
         private static final int SHADOW_SIZE = 8;
+        // One ring per pixel of shadow, the outermost darkest
+        private static final Color[] RING_COLORS = new Color[SHADOW_SIZE];
+        static {
+            for (int i = 0; i < SHADOW_SIZE; i++) {
+                RING_COLORS[i] = new Color(0, 0, 0, Math.max(20 - (i * 2), 0));
+            }
+        }
+        // Every card shares the same shadow image; the rings stay inside 16 pixels of the edge
+        private static final RenderCache SHADOW = new RenderCache(16, false,
+                (g2, color, width, height) -> {
+                    for (int i = 0; i < SHADOW_SIZE; i++) {
+                        g2.setColor(RING_COLORS[i]);
+                        g2.drawRoundRect(i, i, width - (i * 2) - 1, height - (i * 2) - 1, 12, 12);
+                    }
+                });
         
         @Override
         public void paintBorder(Component c, Graphics g, int x, int y, int width, int height) {
-            Graphics2D g2 = (Graphics2D) g.create();
-            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            
-            // Draw shadow
-            for (int i = 0; i < SHADOW_SIZE; i++) {
-                int alpha = 20 - (i * 2);
-                g2.setColor(new Color(0, 0, 0, Math.max(alpha, 0)));
-                g2.drawRoundRect(x + i, y + i, width - (i * 2) - 1, height - (i * 2) - 1, 12, 12);
-            }
-            
-            g2.dispose();
+            SHADOW.paint(g, SHADOW_COLOR, x, y, width, height);
         }
         
         @Override
@@ -0,0 +1,117 @@
+package ui.utils;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pre-rendered images of one rounded shape, one per colour, reused at any size.
+ *
+ * The shape is drawn once into a small image that is then drawn as nine
+ * slices: the corners as they are, the edges and centre stretched. This
+ * only works for shapes whose edges do not vary along their length, such as
+ * rounded rectangles, and only when the target is larger than two corners;
+ * smaller targets are drawn directly. Use from the EDT only.
+ */
+final class RenderCache {
+    // Strokes can spill half a pixel past the shape, more once scaled; keep that spill in the image
+    private static final int MARGIN = 1;
+    
+    /**
+     * Draws the shape filling width x height at the origin, antialiasing already on
+     */
+    interface Painter {
+        void paint(Graphics2D g2, Color color, int width, int height);
+    }
+    
+    private final int corner;
+    private final boolean fillCenter;
+    private final Painter painter;
+    private final Map<Color, Slices> images = new HashMap<>();
+    
+    /**
+     * @param corner size of the corner slices; must cover the corner arc and its antialiasing
+     * @param fillCenter false if the shape leaves its centre empty, which is then skipped
+     */
+    RenderCache(int corner, boolean fillCenter, Painter painter) {
+        this.corner = corner;
+        this.fillCenter = fillCenter;
+        this.painter = painter;
+    }
+    
+    void paint(Graphics g, Color color, int x, int y, int width, int height) {
+        Graphics2D g2 = (Graphics2D) g;
+        if (width <= 2 * corner || height <= 2 * corner) {
+            Graphics2D direct = (Graphics2D) g.create();
+            direct.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            direct.translate(x, y);
+            painter.paint(direct, color, width, height);
+            direct.dispose();
+            return;
+        }
+    
+        // Rendered at the screen's scale so HiDPI displays stay sharp
+        double scale = g2.getTransform().getScaleX();
+        Slices slices = images.get(color);
+        if (slices == null || slices.scale != scale) {
+            slices = new Slices(g2.getDeviceConfiguration(), color, scale);
+            images.put(color, slices);
+        }
+    
+        Image image = slices.image;
+        int size = slices.size;
+        int source = slices.corner;
+        int left = x - MARGIN;
+        int top = y - MARGIN;
+        int outerRight = x + width + MARGIN;
+        int outerBottom = y + height + MARGIN;
+        int innerLeft = x + corner;
+        int innerTop = y + corner;
+        int right = x + width - corner;
+        int bottom = y + height - corner;
+    
+        // Corners
+        g2.drawImage(image, left, top, innerLeft, innerTop, 0, 0, source, source, null);
+        g2.drawImage(image, right, top, outerRight, innerTop, size - source, 0, size, source, null);
+        g2.drawImage(image, left, bottom, innerLeft, outerBottom, 0, size - source, source, size, null);
+        g2.drawImage(image, right, bottom, outerRight, outerBottom, size - source, size - source, size, size, null);
+    
+        // Edges
+        g2.drawImage(image, innerLeft, top, right, innerTop, source, 0, size - source, source, null);
+        g2.drawImage(image, innerLeft, bottom, right, outerBottom, source, size - source, size - source, size, null);
+        g2.drawImage(image, left, innerTop, innerLeft, bottom, 0, source, source, size - source, null);
+        g2.drawImage(image, right, innerTop, outerRight, bottom, size - source, source, size, size - source, null);
+    
+        if (fillCenter) {
+            g2.drawImage(image, innerLeft, innerTop, right, bottom, source, source, size - source, size - source, null);
+        }
+    }
+    
+    /**
+     * The shape drawn two corners plus one pixel wide, so the middle row and column stretch,
+     * with a margin around it
+     */
+    private final class Slices {
+        private final double scale;
+        private final Image image;
+        private final int size;
+        private final int corner;
+    
+        Slices(GraphicsConfiguration configuration, Color color, double scale) {
+            int shapeSize = 2 * RenderCache.this.corner + 1;
+            this.scale = scale;
+            this.size = (int) Math.ceil((shapeSize + 2 * MARGIN) * scale);
+            this.corner = (int) Math.round((RenderCache.this.corner + MARGIN) * scale);
+    
+            BufferedImage image = configuration.createCompatibleImage(size, size, Transparency.TRANSLUCENT);
+            Graphics2D g2 = image.createGraphics();
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2.scale(scale, scale);
+            g2.translate(MARGIN, MARGIN);
+            painter.paint(g2, color, shapeSize, shapeSize);
+            g2.dispose();
+            this.image = image;
+        }
+    }
+}
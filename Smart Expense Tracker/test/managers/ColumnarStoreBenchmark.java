@@ -0,0 +1,152 @@
+package managers;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import models.Category;
+import models.Expense;
+
+/**
+ * Heap footprint and scan speed of ColumnarExpenseStore against the
+ * object rows ExpenseManager keeps, and a check that both give the same
+ * totals, range and category results.
+ *
+ * Run after mvn test-compile, one row count per run so each heap figure
+ * starts from an empty heap:
+ *
+ *   java -Xmx4600m -XX:+UseSerialGC -cp "target/classes:target/test-classes:lib/*" \
+ *       managers.ColumnarStoreBenchmark 1000000
+ *
+ * At 10M rows the two do not fit in one heap together, so pass "manager" or
+ * "columnar" as a second argument and run them one at a time.
+ *
+ * Measured on JDK 17, one core, 8 categories, a fresh description and
+ * UUID id per row:
+ *
+ *   rows        ExpenseManager        columnar store
+ *   1,000,000   345 MB (362 B/row)    107 MB (112 B/row)
+ *   10,000,000  3,600 MB (377 B/row)  1,252 MB (131 B/row)
+ *
+ *   One year's range total over 1M rows: object date buckets 8.0 ms, columns 4.8 ms
+ *
+ * About 50 bytes of each columnar row is the description String; the array
+ * growth step leaves up to a third of the columns unused at 10M rows.
+ */
+public class ColumnarStoreBenchmark {
+    private static final Category[] CATEGORIES = Category.getDefaultCategories();
+    private static final LocalDate FIRST_DAY = LocalDate.of(2016, 1, 1);
+    private static final int DAYS = 3650;
+    private static final int BATCH = 100_000;
+
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        String only = args.length > 1 ? args[1] : "both";
+
+        long baseline = usedHeap();
+        ExpenseManager manager = null;
+        if (!only.equals("columnar")) {
+            manager = new ExpenseManager(false);
+            fill(rows, manager::addExpenses);
+            report("ExpenseManager", rows, usedHeap() - baseline);
+        }
+
+        ColumnarExpenseStore store = null;
+        if (!only.equals("manager")) {
+            long before = usedHeap();
+            ColumnarExpenseStore columns = new ColumnarExpenseStore(List.of(CATEGORIES));
+            fill(rows, batch -> batch.forEach(columns::add));
+            report("Columnar store", rows, usedHeap() - before);
+            store = columns;
+        }
+
+        if (manager != null && store != null) {
+            compare(manager, store);
+            timeRangeTotals(manager, store);
+        }
+    }
+
+    // Same seed for both, so the two hold identical rows, ids included
+    private static void fill(int rows, java.util.function.Consumer<List<Expense>> sink) {
+        Random random = new Random(42);
+        for (int start = 0; start < rows; start += BATCH) {
+            int size = Math.min(BATCH, rows - start);
+            List<Expense> batch = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                batch.add(new Expense(
+                        new UUID(random.nextLong(), random.nextLong()).toString(),
+                        "Expense " + (start + i),
+                        random.nextInt(100_000) / 100.0,
+                        CATEGORIES[random.nextInt(CATEGORIES.length)],
+                        FIRST_DAY.plusDays(random.nextInt(DAYS)),
+                        null));
+            }
+            sink.accept(batch);
+        }
+    }
+
+    private static void compare(ExpenseManager manager, ColumnarExpenseStore store) {
+        check("total", manager.getTotalExpenses(), store.getTotalExpenses());
+        for (Category category : CATEGORIES) {
+            check(category.getName() + " total", manager.getTotalExpensesByCategory(category),
+                    store.getTotalExpensesByCategory(category));
+            check(category.getName() + " rows", manager.getExpensesByCategory(category).size(),
+                    store.getExpensesByCategory(category).size());
+        }
+        LocalDate from = LocalDate.of(2020, 3, 1);
+        LocalDate to = LocalDate.of(2020, 5, 31);
+        List<Expense> objects = manager.getExpensesByDateRange(from, to);
+        List<Expense> columns = store.getExpensesByDateRange(from, to);
+        check("range rows", objects.size(), columns.size());
+        for (int i = 0; i < objects.size(); i++) {
+            if (!objects.get(i).getDate().equals(columns.get(i).getDate())) {
+                throw new AssertionError("range order differs at row " + i);
+            }
+        }
+        Expense sample = objects.get(objects.size() / 2);
+        Expense copy = store.get(sample.getId());
+        if (copy == null || !copy.getDescription().equals(sample.getDescription())) {
+            throw new AssertionError("id lookup failed for " + sample.getId());
+        }
+        System.out.println("Results match");
+    }
+
+    private static void timeRangeTotals(ExpenseManager manager, ColumnarExpenseStore store) {
+        LocalDate from = LocalDate.of(2019, 1, 1);
+        LocalDate to = LocalDate.of(2019, 12, 31);
+        double sink = 0;
+        long objectNanos = Long.MAX_VALUE;
+        long columnNanos = Long.MAX_VALUE;
+        for (int round = 0; round < 20; round++) {
+            long start = System.nanoTime();
+            sink += manager.getTotalExpensesByDateRange(from, to);
+            objectNanos = Math.min(objectNanos, System.nanoTime() - start);
+            start = System.nanoTime();
+            sink += store.getTotalExpensesByDateRange(from, to);
+            columnNanos = Math.min(columnNanos, System.nanoTime() - start);
+        }
+        System.out.printf("Year range total: object date buckets %.1f ms, columns %.1f ms (%.0f)%n",
+                objectNanos / 1e6, columnNanos / 1e6, sink);
+    }
+
+    private static void check(String what, double expected, double actual) {
+        if (Math.abs(expected - actual) > 0.005 * Math.max(1, Math.abs(expected) / 1e6)) {
+            throw new AssertionError(what + ": expected " + expected + " but columns gave " + actual);
+        }
+    }
+
+    private static void report(String name, int rows, long bytes) {
+        System.out.printf("%-16s %,d rows: %,d MB (%d B/row)%n", name, rows, bytes >> 20, bytes / rows);
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
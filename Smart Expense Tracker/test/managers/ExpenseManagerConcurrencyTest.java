@@ -0,0 +1,142 @@
+package managers;
+
+import models.Category;
+import models.Expense;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Writers add, update and delete while readers check that every totals read
+ * is consistent with itself. Amounts are whole dollars, so the sums are exact.
+ */
+class ExpenseManagerConcurrencyTest {
+    private static final int WRITERS = 3;
+    private static final int READERS = 2;
+    private static final int OPERATIONS = 4000;
+    private static final LocalDate FIRST_DAY = LocalDate.of(2023, 1, 1);
+
+    @Test
+    void totalsStayConsistentUnderConcurrentChanges() throws InterruptedException {
+        stress(new ExpenseManager(false));
+    }
+
+    @Test
+    void columnarTotalsStayConsistentUnderConcurrentChanges() throws InterruptedException {
+        stress(new ExpenseManager(true));
+    }
+
+    private static void stress(ExpenseManager manager) throws InterruptedException {
+        List<Category> categories = manager.getCategories();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch writersDone = new CountDownLatch(WRITERS);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            int writer = w;
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    write(manager, categories, writer);
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    writersDone.countDown();
+                }
+            }, "writer-" + w));
+        }
+        for (int r = 0; r < READERS; r++) {
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    long lastVersion = -1;
+                    while (writing.get() && failure.get() == null) {
+                        ExpenseAggregates totals = manager.getTotals();
+                        assertConsistent(totals);
+                        assertTrue(totals.getVersion() >= lastVersion, "version went backwards");
+                        lastVersion = totals.getVersion();
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }, "reader-" + r));
+        }
+
+        threads.forEach(Thread::start);
+        start.countDown();
+        writersDone.await();
+        writing.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            fail("Concurrent access failed", failure.get());
+        }
+
+        // The running totals match a recount of what is stored
+        ExpenseAggregates totals = manager.getTotals();
+        assertConsistent(totals);
+        List<Expense> stored = manager.getAllExpenses();
+        double sum = 0;
+        for (Expense expense : stored) {
+            sum += expense.getAmount();
+        }
+        assertEquals(stored.size(), totals.getCount());
+        assertEquals(sum, totals.getTotal(), 1e-6);
+        assertEquals(sum, manager.getTotalExpenses(), 1e-6);
+    }
+
+    // Each writer owns its own ids, so its updates and deletes always find them
+    private static void write(ExpenseManager manager, List<Category> categories, int writer) {
+        Random random = new Random(writer);
+        List<String> live = new ArrayList<>();
+        int next = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            int op = live.isEmpty() ? 0 : random.nextInt(4);
+            if (op <= 1) {
+                String id = "w" + writer + "-" + next++;
+                manager.addExpense(expense(id, random, categories));
+                live.add(id);
+            } else if (op == 2) {
+                String id = live.get(random.nextInt(live.size()));
+                manager.updateExpense(id, expense(id, random, categories));
+            } else {
+                manager.deleteExpense(live.remove(random.nextInt(live.size())));
+            }
+        }
+    }
+
+    private static Expense expense(String id, Random random, List<Category> categories) {
+        return new Expense(id, "Expense " + id, 1 + random.nextInt(500),
+                categories.get(random.nextInt(categories.size())),
+                FIRST_DAY.plusDays(random.nextInt(730)), null);
+    }
+
+    private static void assertConsistent(ExpenseAggregates totals) {
+        double byCategory = 0;
+        for (double sum : totals.getCategoryTotals().values()) {
+            byCategory += sum;
+        }
+        double byMonth = 0;
+        for (double sum : totals.getMonthTotals().values()) {
+            byMonth += sum;
+        }
+        assertEquals(totals.getTotal(), byCategory, 1e-6, "category totals disagree with the total");
+        assertEquals(totals.getTotal(), byMonth, 1e-6, "month totals disagree with the total");
+        assertTrue(totals.getCount() >= 0);
+        for (YearMonth month : totals.getMonthTotals().keySet()) {
+            assertFalse(month.isBefore(YearMonth.from(FIRST_DAY)), "unexpected month " + month);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package storage;
+
+import models.Category;
+
+import java.nio.file.Path;
+import java.util.List;
+
+class JsonStorageBackendTest extends StorageBackendContract {
+    @Override
+    StorageBackend open(Path dataDir, List<Category> categories) {
+        return new JsonStorageBackend(dataDir, () -> categories);
+    }
+}
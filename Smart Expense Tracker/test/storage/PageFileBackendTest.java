@@ -0,0 +1,15 @@
+package storage;
+
+import models.Category;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+class PageFileBackendTest extends StorageBackendContract {
+    @Override
+    StorageBackend open(Path dataDir, List<Category> categories) throws IOException {
+        // A small cache, so the larger tests page through it
+        return new PageFileBackend(dataDir.resolve("expenses.db"), () -> categories, 16);
+    }
+}
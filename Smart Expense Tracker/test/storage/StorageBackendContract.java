@@ -0,0 +1,186 @@
+package storage;
+
+import models.Category;
+import models.Expense;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Conformance checks every StorageBackend has to pass. Each backend gets a
+ * subclass that only says how to open it on a directory.
+ */
+abstract class StorageBackendContract {
+    private static final Category FOOD = new Category("food", "Food", Color.ORANGE, "F");
+    private static final Category TRAVEL = new Category("travel", "Travel", Color.BLUE, "T");
+
+    @TempDir
+    Path dataDir;
+
+    private final List<Category> categories = new ArrayList<>(List.of(FOOD, TRAVEL));
+    private StorageBackend backend;
+
+    /**
+     * Opens the backend kept in this directory, creating it when empty
+     */
+    abstract StorageBackend open(Path dataDir, List<Category> categories) throws IOException;
+
+    @BeforeEach
+    void openBackend() throws IOException {
+        backend = open(dataDir, categories);
+    }
+
+    @AfterEach
+    void closeBackend() throws IOException {
+        backend.close();
+    }
+
+    private StorageBackend reopen() throws IOException {
+        backend.close();
+        backend = open(dataDir, categories);
+        return backend;
+    }
+
+    private static Expense expense(String id, double amount, Category category, LocalDate date) {
+        return new Expense(id, "Expense " + id, amount, category, date, "note " + id);
+    }
+
+    private static void assertSameExpense(Expense expected, Expense actual) {
+        assertNotNull(actual, "missing " + expected.getId());
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getDescription(), actual.getDescription());
+        assertEquals(expected.getAmount(), actual.getAmount(), 0.0);
+        assertEquals(expected.getCategory().getId(), actual.getCategory().getId());
+        assertEquals(expected.getDate(), actual.getDate());
+        assertEquals(expected.getNotes(), actual.getNotes());
+    }
+
+    private static List<String> ids(List<Expense> expenses) {
+        List<String> ids = new ArrayList<>();
+        for (Expense expense : expenses) {
+            ids.add(expense.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    void startsEmpty() throws IOException {
+        assertEquals(0, backend.size());
+        assertNull(backend.get("missing"));
+        assertTrue(backend.scanAll().isEmpty());
+    }
+
+    @Test
+    void putThenGet() throws IOException {
+        Expense lunch = expense("a", 12.5, FOOD, LocalDate.of(2024, 3, 1));
+        backend.put(lunch);
+
+        assertEquals(1, backend.size());
+        assertSameExpense(lunch, backend.get("a"));
+    }
+
+    @Test
+    void putReplacesSameId() throws IOException {
+        backend.put(expense("a", 12.5, FOOD, LocalDate.of(2024, 3, 1)));
+        Expense moved = expense("a", 99.0, TRAVEL, LocalDate.of(2024, 5, 9));
+        backend.put(moved);
+
+        assertEquals(1, backend.size());
+        assertSameExpense(moved, backend.get("a"));
+        // The old date no longer finds it
+        assertTrue(backend.scanByDate(LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 1)).isEmpty());
+    }
+
+    @Test
+    void deleteReportsWhetherStored() throws IOException {
+        backend.put(expense("a", 1, FOOD, LocalDate.of(2024, 3, 1)));
+
+        assertTrue(backend.delete("a"));
+        assertFalse(backend.delete("a"));
+        assertFalse(backend.delete("never"));
+        assertNull(backend.get("a"));
+        assertEquals(0, backend.size());
+    }
+
+    @Test
+    void scanByDateIsInclusiveAndOldestFirst() throws IOException {
+        backend.put(expense("may", 1, FOOD, LocalDate.of(2024, 5, 1)));
+        backend.put(expense("jan", 1, FOOD, LocalDate.of(2024, 1, 31)));
+        backend.put(expense("mar", 1, TRAVEL, LocalDate.of(2024, 3, 15)));
+        backend.put(expense("feb", 1, FOOD, LocalDate.of(2024, 2, 1)));
+
+        assertEquals(List.of("jan", "feb", "mar", "may"), ids(backend.scanAll()));
+        assertEquals(List.of("feb", "mar"),
+                ids(backend.scanByDate(LocalDate.of(2024, 2, 1), LocalDate.of(2024, 3, 15))));
+        assertTrue(backend.scanByDate(LocalDate.of(2023, 1, 1), LocalDate.of(2023, 12, 31)).isEmpty());
+    }
+
+    @Test
+    void commitAppliesDeletesBeforePuts() throws IOException {
+        backend.put(expense("a", 1, FOOD, LocalDate.of(2024, 1, 1)));
+        backend.put(expense("b", 2, FOOD, LocalDate.of(2024, 1, 2)));
+
+        Expense replacement = expense("a", 5, TRAVEL, LocalDate.of(2024, 1, 3));
+        backend.commit(new StorageBackend.Batch()
+                .delete("a")
+                .delete("b")
+                .put(replacement)
+                .put(expense("c", 3, FOOD, LocalDate.of(2024, 1, 4))));
+
+        assertEquals(2, backend.size());
+        assertSameExpense(replacement, backend.get("a"));
+        assertNull(backend.get("b"));
+        assertEquals(List.of("a", "c"), ids(backend.scanAll()));
+    }
+
+    @Test
+    void storedExpensesAreCopies() throws IOException {
+        Expense lunch = expense("a", 12.5, FOOD, LocalDate.of(2024, 3, 1));
+        backend.put(lunch);
+        lunch.setAmount(1000);
+
+        assertEquals(12.5, backend.get("a").getAmount(), 0.0);
+    }
+
+    @Test
+    void reopenKeepsEveryCommittedChange() throws IOException {
+        List<Expense> kept = new ArrayList<>();
+        StorageBackend.Batch batch = new StorageBackend.Batch();
+        for (int i = 0; i < 500; i++) {
+            Expense expense = expense("e" + i, i, i % 2 == 0 ? FOOD : TRAVEL, LocalDate.of(2023, 1, 1).plusDays(i));
+            batch.put(expense);
+            if (i % 5 != 0) {
+                kept.add(expense);
+            }
+        }
+        backend.commit(batch);
+        for (int i = 0; i < 500; i += 5) {
+            assertTrue(backend.delete("e" + i));
+        }
+
+        StorageBackend reopened = reopen();
+        assertEquals(kept.size(), reopened.size());
+        List<Expense> stored = reopened.scanAll();
+        assertEquals(ids(kept), ids(stored));
+        for (int i = 0; i < kept.size(); i++) {
+            assertSameExpense(kept.get(i), stored.get(i));
+        }
+    }
+
+    @Test
+    void categoriesResolveToTheSuppliedInstances() throws IOException {
+        backend.put(expense("a", 1, TRAVEL, LocalDate.of(2024, 3, 1)));
+
+        assertSame(TRAVEL, reopen().get("a").getCategory());
+    }
+}